@@ -0,0 +1,26 @@
+package tw.com.eeit.ajax.ch1_2.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import tw.com.eeit.ajax.ch1_2.model.User;
+
+/**
+ * UserService.findAll 每次呼叫建立 20 位使用者的物件
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserServiceBenchmark {
+
+    private final UserService userService = new UserService();
+
+    @Benchmark
+    public List<User> findAll() {
+        return userService.findAll();
+    }
+}
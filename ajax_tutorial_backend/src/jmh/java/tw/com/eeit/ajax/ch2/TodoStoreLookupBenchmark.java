@@ -0,0 +1,39 @@
+package tw.com.eeit.ajax.ch2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * TodoStore.findById (Ch2TodoController.getOne 的查詢) 在不同資料量下的表現
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TodoStoreLookupBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int size;
+
+    private TodoStore todoStore;
+    private Integer lastId;
+
+    @Setup
+    public void setup() {
+        todoStore = new TodoStore();
+        for (int i = todoStore.findAll().size(); i < size; i++) {
+            todoStore.add("Todo " + i, false);
+        }
+        // 查最後一筆
+        lastId = size;
+    }
+
+    @Benchmark
+    public Todo findById() {
+        return todoStore.findById(lastId).orElseThrow();
+    }
+}
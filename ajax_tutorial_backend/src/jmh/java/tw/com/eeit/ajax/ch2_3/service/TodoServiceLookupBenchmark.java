@@ -0,0 +1,46 @@
+package tw.com.eeit.ajax.ch2_3.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import tw.com.eeit.ajax.ch2_3.model.Todo;
+
+/**
+ * TodoService.getTodoById 在不同資料量下的查詢
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TodoServiceLookupBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int size;
+
+    private TodoService todoService;
+    private Integer lastId;
+
+    @Setup
+    public void setup() {
+        // getAllTodos 不可修改，以預設內容補到指定數量後建立自己的 TodoService
+        List<Todo> todos = new ArrayList<>(new TodoService(new ObjectMapper()).getAllTodos());
+        for (int i = todos.size() + 1; i <= size; i++) {
+            todos.add(new Todo(1, i, "Todo " + i, false));
+        }
+        todoService = new TodoService(new ObjectMapper(), todos);
+        lastId = todos.get(todos.size() - 1).getId();
+    }
+
+    @Benchmark
+    public Todo getTodoById() {
+        return todoService.getTodoById(lastId);
+    }
+}
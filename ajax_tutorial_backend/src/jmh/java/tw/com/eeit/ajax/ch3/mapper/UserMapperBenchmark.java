@@ -0,0 +1,47 @@
+package tw.com.eeit.ajax.ch3.mapper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import tw.com.eeit.ajax.ch1.model.User;
+import tw.com.eeit.ajax.ch3.dto.UserCreateRequest;
+import tw.com.eeit.ajax.ch3.dto.UserResponse;
+
+/**
+ * MapStruct 產生的 UserMapperImpl
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+    private User user;
+    private UserCreateRequest request;
+
+    @Setup
+    public void setup() {
+        userMapper = new UserMapperImpl();
+        user = new User(1, "Alice", List.of("Java", "Spring Boot"), "Secret123");
+        request = new UserCreateRequest();
+        request.setUsername("Alice");
+        request.setEmail("alice@example.com");
+        request.setPassword("1234");
+        request.setPhoneNumber("0912345678");
+    }
+
+    @Benchmark
+    public UserResponse toDto() {
+        return userMapper.toDto(user);
+    }
+
+    @Benchmark
+    public User toEntity() {
+        return userMapper.toEntity(request);
+    }
+}
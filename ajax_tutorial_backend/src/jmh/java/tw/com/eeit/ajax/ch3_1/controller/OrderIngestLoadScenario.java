@@ -0,0 +1,143 @@
+package tw.com.eeit.ajax.ch3_1.controller;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 新增訂單的壓力測試: 同步 (POST /users/{id}/orders) vs 非同步批次 (POST /users/{id}/orders:async)
+ * 不是 JMH benchmark，需要先把後端跑起來並建立使用者 (id 1..users)，再執行這個 main
+ *
+ * 1. 啟動後端，例如 --app.db.injected-latency-ms=5 (模擬遠端 DB 每個 statement 的延遲)
+ *    與 --app.rate-limit.enabled=false (所有 client 共用 admin 帳號，否則會被限流)
+ * 2. ./mvnw -Pjmh test-compile
+ * 3. java -cp target/test-classes:$(依賴 classpath) tw.com.eeit.ajax.ch3_1.controller.OrderIngestLoadScenario \
+ *      [baseUrl=http://localhost:8080] [mode=sync|async] [clients=50] [seconds=20] [users=8]
+ *
+ * 輸出: API 回應的吞吐量，以及實際 commit 進 DB 的吞吐量 (非同步模式會等所有追蹤單完成才停止計時)
+ */
+public class OrderIngestLoadScenario {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        boolean async = args.length > 1 && args[1].equals("async");
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int users = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+        String token = login(http, baseUrl);
+        String path = async ? "/orders:async" : "/orders";
+
+        System.out.printf("target=%s mode=%s clients=%d duration=%ds users=%d%n",
+                baseUrl, async ? "async" : "sync", clients, seconds, users);
+        double ingestedBefore = ingestedOrders(http, baseUrl, token);
+        double createdBefore = createdOrders(http, baseUrl, token);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder accepted = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        // 1. 每個 client 一條執行緒，收到回應後立刻送下一筆 (closed-loop)，使用者隨機挑選
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            pool.execute(() -> {
+                while (running.get()) {
+                    long userId = ThreadLocalRandom.current().nextLong(1, users + 1);
+                    HttpRequest request = HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/api/ch3_1/users/" + userId + path))
+                            .header("Authorization", "Bearer " + token)
+                            .header("Content-Type", "application/json")
+                            .timeout(Duration.ofSeconds(60))
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"totalAmount\":100}"))
+                            .build();
+                    try {
+                        int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 201 || status == 202) {
+                            accepted.increment();
+                        } else if (status == 429 || status == 503) {
+                            rejected.increment();
+                        } else {
+                            errors.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            });
+        }
+
+        long started = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        pool.shutdown();
+        pool.awaitTermination(90, TimeUnit.SECONDS);
+        double requestSeconds = (System.nanoTime() - started) / 1e9;
+
+        // 2. 非同步模式: 等所有追蹤單都完成 (CREATED / FAILED)，commit 吞吐量以全部寫完的時間計算
+        long committed = accepted.sum();
+        if (async) {
+            while (ingestedOrders(http, baseUrl, token) - ingestedBefore < accepted.sum()) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            committed = Math.round(createdOrders(http, baseUrl, token) - createdBefore);
+        }
+        double commitSeconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.printf("accepted=%d rejected(429/503)=%d errors=%d%n", accepted.sum(), rejected.sum(), errors.sum());
+        System.out.printf("api throughput=%.1f req/s%n", accepted.sum() / requestSeconds);
+        System.out.printf("committed=%d commit throughput=%.1f orders/s%n", committed, committed / commitSeconds);
+        System.exit(0);
+    }
+
+    private static String login(HttpClient http, String baseUrl) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/ch4/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"1234\"}"))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        return MAPPER.readTree(response.body()).get("token").asText();
+    }
+
+    // 已完成的追蹤單 (成功 + 失敗)
+    private static double ingestedOrders(HttpClient http, String baseUrl, String token) throws Exception {
+        return metric(http, baseUrl, token, "ch3_1.order.ingest.orders", "COUNT");
+    }
+
+    private static double createdOrders(HttpClient http, String baseUrl, String token) throws Exception {
+        return metric(http, baseUrl, token, "ch3_1.order.ingest.orders?tag=result:created", "COUNT");
+    }
+
+    private static double metric(HttpClient http, String baseUrl, String token, String name, String statistic)
+            throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+        String body = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        for (JsonNode measurement : MAPPER.readTree(body).path("measurements")) {
+            if (statistic.equals(measurement.path("statistic").asText())) {
+                return measurement.path("value").asDouble();
+            }
+        }
+        return 0;
+    }
+}
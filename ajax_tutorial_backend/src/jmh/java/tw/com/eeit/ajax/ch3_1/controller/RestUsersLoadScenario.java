@@ -0,0 +1,191 @@
+package tw.com.eeit.ajax.ch3_1.controller;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * GET /api/ch3_1/users 的壓力測試 (platform threads vs virtual threads)
+ * 不是 JMH benchmark，需要先把後端跑起來，再執行這個 main
+ *
+ * 1. 啟動後端 (兩種模式都給一樣的 DB 延遲與連線池)
+ *    platform: --app.db.injected-latency-ms=50 --spring.datasource.hikari.maximum-pool-size=400 --app.rate-limit.enabled=false
+ *    virtual : 再加上 --spring.profiles.active=vthreads (需 JDK 21)
+ * 2. ./mvnw -Pjmh test-compile
+ * 3. java -cp target/test-classes:$(依賴 classpath) tw.com.eeit.ajax.ch3_1.controller.RestUsersLoadScenario \
+ *      [baseUrl=http://localhost:8080] [clients=400] [seconds=20] [warmupSeconds=5]
+ *
+ * 輸出: 吞吐量、p50/p95/p99 延遲 (只算 200)、被 ConcurrencyLimitInterceptor 拒絕的 503 數量，
+ * 以及伺服器端同時處理中的請求數最大值 (取自 /actuator/metrics/http.server.requests.active)
+ * 比較自適應上限時，另外用 --app.concurrency-limit.enabled=false 啟動一次
+ */
+public class RestUsersLoadScenario {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int warmupSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+        String token = login(http, baseUrl);
+        HttpRequest usersRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ch3_1/users"))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        HttpRequest activeRequest = HttpRequest.newBuilder(
+                URI.create(baseUrl + "/actuator/metrics/http.server.requests.active"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+
+        System.out.printf("target=%s clients=%d duration=%ds warmup=%ds%n", baseUrl, clients, seconds, warmupSeconds);
+        run(http, usersRequest, activeRequest, clients, warmupSeconds, false);
+        run(http, usersRequest, activeRequest, clients, seconds, true);
+        System.exit(0);
+    }
+
+    private static void run(HttpClient http, HttpRequest usersRequest, HttpRequest activeRequest, int clients,
+            int seconds, boolean report) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder errors = new LongAdder();
+        LongAdder shed = new LongAdder();
+        AtomicInteger maxServerInFlight = new AtomicInteger();
+
+        // 1. 每個 client 一條執行緒，收到回應後立刻送下一個 (closed-loop)
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            pool.execute(() -> {
+                while (running.get()) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = http.send(usersRequest, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 503) {
+                            // 被拒絕時照 Retry-After 等一下再送 (Tomcat 回 503 後會關閉連線，立刻重送只會一直重新連線)
+                            shed.increment();
+                            long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                            TimeUnit.SECONDS.sleep(retryAfter);
+                            continue;
+                        }
+                        if (response.statusCode() != 200) {
+                            errors.increment();
+                            continue;
+                        }
+                        recorder.add(System.nanoTime() - start);
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            });
+        }
+
+        // 2. 另一條執行緒定期讀伺服器端的 active requests
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                try {
+                    HttpResponse<String> response = http.send(activeRequest, HttpResponse.BodyHandlers.ofString());
+                    int active = activeTasks(response.body());
+                    // 扣掉取樣請求本身
+                    maxServerInFlight.accumulateAndGet(active - 1, Math::max);
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception ignored) {
+                    // 伺服器忙不過來時取樣可能逾時，下一輪再試
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long started = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        pool.shutdown();
+        pool.awaitTermination(90, TimeUnit.SECONDS);
+        sampler.interrupt();
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+        if (!report) {
+            return;
+        }
+
+        // 3. 統計
+        long[] all = recorders.stream()
+                .flatMapToLong(recorder -> Arrays.stream(recorder.toArray()))
+                .sorted()
+                .toArray();
+        System.out.printf("requests=%d errors=%d rejected(503)=%d throughput=%.1f req/s%n", all.length,
+                errors.sum(), shed.sum(), all.length / elapsedSeconds);
+        System.out.printf("latency ms: p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+                percentile(all, 0.50), percentile(all, 0.95), percentile(all, 0.99), percentile(all, 1.0));
+        System.out.printf("max server in-flight requests=%d%n", maxServerInFlight.get());
+    }
+
+    private static String login(HttpClient http, String baseUrl) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/ch4/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"1234\"}"))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        return MAPPER.readTree(response.body()).get("token").asText();
+    }
+
+    private static int activeTasks(String body) throws Exception {
+        for (JsonNode measurement : MAPPER.readTree(body).path("measurements")) {
+            if ("ACTIVE_TASKS".equals(measurement.path("statistic").asText())) {
+                return measurement.path("value").asInt();
+            }
+        }
+        return 0;
+    }
+
+    private static double percentile(long[] sortedNanos, double p) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+
+    // 每個 client 自己一份，避免共用集合的競爭
+    private static class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package tw.com.eeit.ajax.ch3_1.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Jackson 序列化 RestUser (不含 / 含 orders)
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RestUserSerializationBenchmark {
+
+    // 0 = 沒有 orders
+    @Param({ "0", "10", "100" })
+    public int orderCount;
+
+    private ObjectMapper objectMapper;
+    private RestUser user;
+
+    @Setup
+    public void setup() {
+        // 與 Spring Boot 預設的 ObjectMapper 設定一致
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        user = new RestUser("Alice", "alice@example.com");
+        user.setId(1L);
+
+        if (orderCount > 0) {
+            List<RestOrder> orders = new ArrayList<>();
+            for (int i = 0; i < orderCount; i++) {
+                RestOrder order = new RestOrder(100.0 + i, "PAID");
+                order.setId((long) i);
+                order.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i));
+                order.setUser(user);
+                orders.add(order);
+            }
+            user.setOrders(orders);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+}
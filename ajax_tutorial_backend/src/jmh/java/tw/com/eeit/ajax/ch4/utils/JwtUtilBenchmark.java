@@ -0,0 +1,45 @@
+package tw.com.eeit.ajax.ch4.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * JwtUtil：產生 Token、驗證 Token (快取命中 / 不使用快取)
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtUtilBenchmark {
+
+    private JwtUtil cachedJwtUtil;
+    private JwtUtil uncachedJwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cachedJwtUtil = new JwtUtil(new SimpleMeterRegistry(), JwtUtil.DEFAULT_ACCESS_TOKEN_TTL, 10_000);
+        uncachedJwtUtil = new JwtUtil(new SimpleMeterRegistry(), JwtUtil.DEFAULT_ACCESS_TOKEN_TTL, 0);
+        token = cachedJwtUtil.generateToken("admin");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachedJwtUtil.generateToken("admin");
+    }
+
+    @Benchmark
+    public String validateCached() {
+        return cachedJwtUtil.validateTokenAndGetUsername(token);
+    }
+
+    @Benchmark
+    public String validateUncached() {
+        return uncachedJwtUtil.validateTokenAndGetUsername(token);
+    }
+}
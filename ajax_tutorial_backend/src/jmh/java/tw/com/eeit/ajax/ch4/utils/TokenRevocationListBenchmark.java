@@ -0,0 +1,51 @@
+package tw.com.eeit.ajax.ch4.utils;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * TokenRevocationList：每個已登入請求都會呼叫的 isRevoked
+ * 已撤銷 revoked 個 Token 時，檢查一個沒被撤銷的 jti (bloom filter 直接回答) 與一個已撤銷的 jti
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenRevocationListBenchmark {
+
+    @Param({ "0", "10000" })
+    private int revoked;
+
+    private TokenRevocationList revocationList;
+    private String activeJti;
+    private String revokedJti;
+
+    @Setup
+    public void setup() {
+        revocationList = new TokenRevocationList(new SimpleMeterRegistry(), Duration.ofMinutes(15), 10_000);
+        long expiresAt = System.currentTimeMillis() + Duration.ofMinutes(15).toMillis();
+        for (int i = 0; i < revoked; i++) {
+            revokedJti = UUID.randomUUID().toString();
+            revocationList.revoke(revokedJti, expiresAt);
+        }
+        activeJti = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public boolean activeToken() {
+        return revocationList.isRevoked(activeJti);
+    }
+
+    @Benchmark
+    public boolean revokedToken() {
+        return revokedJti != null && revocationList.isRevoked(revokedJti);
+    }
+}
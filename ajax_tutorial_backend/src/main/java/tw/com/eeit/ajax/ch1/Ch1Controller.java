@@ -1,9 +1,14 @@
 package tw.com.eeit.ajax.ch1;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
 import tw.com.eeit.ajax.ch1.model.User;
+import tw.com.eeit.ajax.common.web.SerializedResponseCache;
 
 import java.util.List;
 
@@ -11,16 +16,22 @@ import java.util.List;
 @RequestMapping("/ch1")
 public class Ch1Controller {
 
+    // 固定的示範資料，只序列化一次
+    private static final String USERS_CACHE_KEY = "ch1.users";
+
+    @Autowired
+    private SerializedResponseCache responseCache;
+
     @GetMapping("/test")
     public String test() {
         return "Hello Ajax from Spring Boot!";
     }
 
     @GetMapping("/users")
-    public List<User> getAllUsers() {
-        return List.of(
+    public ResponseEntity<byte[]> getAllUsers(WebRequest request) {
+        return responseCache.respond(USERS_CACHE_KEY, () -> List.of(
             new User(1, "Alice", List.of("Java", "Spring Boot"), "I love coding"),
             new User(2, "Bob", List.of("HTML", "CSS"), "I hate bugs")
-        );
+        ), request);
     }
 }
@@ -1,14 +1,21 @@
 package tw.com.eeit.ajax.ch1_1.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
+import tw.com.eeit.ajax.ch1_1.model.dto.CartQuantityChange;
+import tw.com.eeit.ajax.ch1_1.model.dto.CartTotals;
 import tw.com.eeit.ajax.ch1_1.model.entity.CartItem;
 import tw.com.eeit.ajax.ch1_1.service.CartService;
 
@@ -25,6 +32,7 @@ public class CartController {
     public String viewCart(Model model) {
         List<CartItem> items = cartService.getCurrentCart();
         model.addAttribute("cartItems", items);
+        model.addAttribute("totals", CartTotals.of(items));
         return "ch1_1/cart_comparison.html";
     }
 
@@ -34,13 +42,52 @@ public class CartController {
         return "redirect:/ch1_1/cart/page";
     }
 
+    // --- 局部更新 (htmx 風格)：只回傳變動的那一列與合計區塊的 HTML ---
+    // 只提供 API，cart_comparison.html 沒有使用 (頁面未載入 htmx)
+
+    // 更新數量，回傳該商品的 <tr> 以及 hx-swap-oob 的合計區塊
+    @PostMapping("/cart/fragment/update")
+    public String updateQuantityFragment(@RequestParam Long productId, @RequestParam Integer newQty, Model model) {
+        CartItem item = cartService.updateQuantity(productId, newQty);
+        if (item == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        model.addAttribute("item", item);
+        model.addAttribute("totals", cartService.getTotals());
+        return "ch1_1/cart_fragments.html :: update";
+    }
+
+    @GetMapping("/cart/fragment/row/{productId}")
+    public String rowFragment(@PathVariable Long productId, Model model) {
+        CartItem item = cartService.getItem(productId);
+        if (item == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        model.addAttribute("item", item);
+        return "ch1_1/cart_fragments.html :: row";
+    }
+
+    @GetMapping("/cart/fragment/totals")
+    public String totalsFragment(Model model) {
+        model.addAttribute("totals", cartService.getTotals());
+        return "ch1_1/cart_fragments.html :: totals(oob=false)";
+    }
+
     @PostMapping("/cart/api/update")
     @ResponseBody
-    public CartItem updateQuantityApi(@RequestParam Long productId, @RequestParam Integer newQty) {
-        cartService.updateQuantity(productId, newQty);
-        return cartService.getCurrentCart().stream()
-                .filter(item -> item.getId().equals(productId))
-                .findFirst()
-                .orElseThrow();
+    public ResponseEntity<CartItem> updateQuantityApi(@RequestParam Long productId, @RequestParam Integer newQty) {
+        // 直接回傳剛更新的商品，不必重新查整個購物車
+        CartItem item = cartService.updateQuantity(productId, newQty);
+        if (item == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(item);
+    }
+
+    // 一次送出多筆數量異動，只回傳有變動的商品
+    @PostMapping("/cart/api/batch-update")
+    @ResponseBody
+    public List<CartItem> batchUpdateApi(@RequestBody List<CartQuantityChange> changes) {
+        return cartService.updateQuantities(changes);
     }
 }
@@ -0,0 +1,7 @@
+package tw.com.eeit.ajax.ch1_1.model.dto;
+
+/**
+ * 批次更新購物車的單筆異動
+ */
+public record CartQuantityChange(Long productId, Integer newQty) {
+}
@@ -0,0 +1,22 @@
+package tw.com.eeit.ajax.ch1_1.model.dto;
+
+import java.util.List;
+
+import tw.com.eeit.ajax.ch1_1.model.entity.CartItem;
+
+/**
+ * 購物車合計 (商品種類數、總數量)
+ */
+public record CartTotals(long itemCount, long totalQuantity) {
+
+    // 已經載入整個購物車時直接計算，不必再查一次 DB
+    public static CartTotals of(List<CartItem> items) {
+        long totalQuantity = 0;
+        for (CartItem item : items) {
+            if (item.getQuantity() != null) {
+                totalQuantity += item.getQuantity();
+            }
+        }
+        return new CartTotals(items.size(), totalQuantity);
+    }
+}
@@ -1,8 +1,15 @@
 package tw.com.eeit.ajax.ch1_1.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import tw.com.eeit.ajax.ch1_1.model.dto.CartTotals;
 import tw.com.eeit.ajax.ch1_1.model.entity.CartItem;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+
+    // 合計交給 DB 算，只回傳一列
+    @Query("select new tw.com.eeit.ajax.ch1_1.model.dto.CartTotals(count(c), coalesce(sum(c.quantity), 0)) "
+            + "from CartItem c")
+    CartTotals findTotals();
 }
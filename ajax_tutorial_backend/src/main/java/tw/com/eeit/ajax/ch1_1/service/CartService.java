@@ -1,6 +1,8 @@
 package tw.com.eeit.ajax.ch1_1.service;
 
 import jakarta.annotation.PostConstruct;
+import tw.com.eeit.ajax.ch1_1.model.dto.CartQuantityChange;
+import tw.com.eeit.ajax.ch1_1.model.dto.CartTotals;
 import tw.com.eeit.ajax.ch1_1.model.entity.CartItem;
 import tw.com.eeit.ajax.ch1_1.repository.CartItemRepository;
 
@@ -8,7 +10,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class CartService {
@@ -35,20 +40,59 @@ public class CartService {
         }
     }
 
+    // 唯讀交易走唯讀副本 (見 ReadWriteRoutingDataSource)
+    @Transactional(readOnly = true)
     public List<CartItem> getCurrentCart() {
         return cartItemRepository.findAll();
     }
 
+    // 單一商品 (找不到時回傳 null)
+    @Transactional(readOnly = true)
+    public CartItem getItem(Long productId) {
+        return cartItemRepository.findById(productId).orElse(null);
+    }
+
+    // 只改一個商品時用聚合查詢算合計，不必載入整個購物車
+    @Transactional(readOnly = true)
+    public CartTotals getTotals() {
+        return cartItemRepository.findTotals();
+    }
+
+    // 回傳更新後的商品 (找不到時回傳 null)
+    // item 是 managed entity，交易結束時 Hibernate 會自動 flush，不需要再 save
     @Transactional
-    public void updateQuantity(Long productId, Integer newQty) {
+    public CartItem updateQuantity(Long productId, Integer newQty) {
 
         if (productId == null) {
             throw new IllegalArgumentException("Product ID 不可為空");
         }
 
-        cartItemRepository.findById(productId).ifPresent(item -> {
+        return cartItemRepository.findById(productId).map(item -> {
             item.setQuantity(newQty);
-            cartItemRepository.save(item);
-        });
+            return item;
+        }).orElse(null);
+    }
+
+    // 批次更新：一次 IN 查詢載入所有商品，UPDATE 在 commit 時以 JDBC batch 一起送出
+    // 只回傳數量真的有改變的商品
+    @Transactional
+    public List<CartItem> updateQuantities(List<CartQuantityChange> changes) {
+        Map<Long, Integer> newQtyById = new LinkedHashMap<>();
+        for (CartQuantityChange change : changes) {
+            if (change.productId() == null || change.newQty() == null) {
+                throw new IllegalArgumentException("Product ID 與數量不可為空");
+            }
+            newQtyById.put(change.productId(), change.newQty()); // 同一商品以最後一筆為準
+        }
+
+        List<CartItem> changed = new ArrayList<>();
+        for (CartItem item : cartItemRepository.findAllById(newQtyById.keySet())) {
+            Integer newQty = newQtyById.get(item.getId());
+            if (!newQty.equals(item.getQuantity())) {
+                item.setQuantity(newQty);
+                changed.add(item);
+            }
+        }
+        return changed;
     }
 }
@@ -1,20 +1,36 @@
 package tw.com.eeit.ajax.ch1_2.controller;
 
-import java.util.List;
-
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.WebRequest;
+
+import tw.com.eeit.ajax.ch1_2.service.UserService;
+import tw.com.eeit.ajax.common.web.SerializedResponseCache;
 
 @Controller
 @RequestMapping("/ch1_2")
 public class UserController {
 
+    // 固定的示範資料，只序列化一次 (資料有變動時呼叫 responseCache.invalidate)
+    public static final String USERS_CACHE_KEY = "ch1_2.users";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SerializedResponseCache responseCache;
+
     @GetMapping("/test")
     public String test() {
         return "Hello Ajax";
     }
     
     // 回傳所有使用者
-
+    @GetMapping("/users")
+    public ResponseEntity<byte[]> getAllUsers(WebRequest request) {
+        return responseCache.respond(USERS_CACHE_KEY, userService::findAll, request);
+    }
 }
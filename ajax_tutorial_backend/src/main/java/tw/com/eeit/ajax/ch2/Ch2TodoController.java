@@ -1,61 +1,88 @@
 package tw.com.eeit.ajax.ch2;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import tw.com.eeit.ajax.common.web.ETags;
 
-import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/ch2/todos")
 public class Ch2TodoController {
 
-    private final List<Todo> todoList = new ArrayList<>();
-    // 模擬 DB 的 Auto Increment ID
-    private final AtomicInteger idGenerator = new AtomicInteger(1);
+    private final TodoStore todoStore;
 
-    public Ch2TodoController() {
-        // 初始化一些假資料
-        todoList.add(new Todo(idGenerator.getAndIncrement(), "Learn JavaScript", true));
-        todoList.add(new Todo(idGenerator.getAndIncrement(), "Learn Spring Boot", true));
-        todoList.add(new Todo(idGenerator.getAndIncrement(), "Learn Ajax", false));
+    public Ch2TodoController(TodoStore todoStore) {
+        this.todoStore = todoStore;
     }
 
     // 1. Get All
+    // If-None-Match 相符時回 304 (回傳 null 表示 checkNotModified 已處理好回應)
     @GetMapping
-    public List<Todo> getAll() {
-        return todoList;
+    public List<Todo> getAll(WebRequest request) {
+        if (request.checkNotModified(ETags.of("todos", todoStore.getVersion()))) {
+            return null;
+        }
+        return todoStore.findAll();
     }
 
     // 2. Get One
     @GetMapping("/{id}")
-    public Todo getOne(@PathVariable Integer id) {
-        return todoList.stream()
-                .filter(todo -> todo.getId().equals(id))
-                .findFirst()
+    public Todo getOne(@PathVariable Integer id, WebRequest request) {
+        long version = todoStore.findVersion(id)
+                .orElseThrow(() -> new RuntimeException("Todo not found"));
+        if (request.checkNotModified(todoETag(id, version))) {
+            return null;
+        }
+        return todoStore.findById(id)
                 .orElseThrow(() -> new RuntimeException("Todo not found"));
     }
 
     // 3. Create (Post)
     @PostMapping
     public Todo create(@RequestBody Todo todo) {
-        todo.setId(idGenerator.getAndIncrement());
-        todoList.add(todo);
-        return todo;
+        return todoStore.add(todo.getTitle(), todo.getCompleted());
     }
 
     // 4. Update (Put)
+    // 帶 If-Match 時，版本不符回 412
     @PutMapping("/{id}")
-    public Todo update(@PathVariable Integer id, @RequestBody Todo todo) {
-        Todo existing = getOne(id);
-        existing.setTitle(todo.getTitle());
-        existing.setCompleted(todo.getCompleted());
-        return existing;
+    public Todo update(@PathVariable Integer id, @RequestBody Todo todo,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return todoStore.update(id, todo.getTitle(), todo.getCompleted(), expectedVersion(id, ifMatch))
+                .orElseThrow(() -> new RuntimeException("Todo not found"));
     }
 
     // 5. Delete
     @DeleteMapping("/{id}")
-    public void delete(@PathVariable Integer id) {
-        todoList.removeIf(t -> t.getId().equals(id));
+    public void delete(@PathVariable Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        todoStore.delete(id, expectedVersion(id, ifMatch));
+    }
+
+    // 比對之後到寫入之前被別人改掉，由 TodoStore 擋下
+    @ExceptionHandler(ConcurrentModificationException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public void handleStaleWrite() {
+    }
+
+    private String todoETag(Integer id, long version) {
+        return ETags.of("todo", id, version);
+    }
+
+    // 沒有 If-Match 時不檢查 (null)；相符時回傳目前版本，交給 TodoStore 在寫入時再確認一次
+    private Long expectedVersion(Integer id, String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        Long current = todoStore.findVersion(id).orElse(null);
+        if (!ETags.matches(ifMatch, current != null ? todoETag(id, current) : null)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        return current;
     }
 }
@@ -0,0 +1,110 @@
+package tw.com.eeit.ajax.ch2;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ch2 的記憶體 Todo 資料庫 (可被多個請求執行緒同時存取)
+ * - index: 以 id 做 O(1) 查詢
+ * - ordered: id 由 AtomicInteger 遞增產生，依 id 排序即為新增順序
+ * - 存進來的 Todo 不再被修改 (更新時換成新物件)，讀取端拿到的一定是完整的資料
+ * - version: 每次新增 / 修改 / 刪除都 +1，提供 ETag 使用；每筆 Todo 也記錄自己最後修改時的版本
+ */
+@Component
+public class TodoStore {
+
+    private record Entry(Todo todo, long version) {
+    }
+
+    private final Map<Integer, Entry> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Todo> ordered = new ConcurrentSkipListMap<>();
+    // 模擬 DB 的 Auto Increment ID
+    private final AtomicInteger idGenerator = new AtomicInteger(1);
+    // 在資料寫入之後才 +1：讀到新版本號時，一定也讀得到對應的資料
+    private final AtomicLong version = new AtomicLong();
+
+    public TodoStore() {
+        // 初始化一些假資料
+        add("Learn JavaScript", true);
+        add("Learn Spring Boot", true);
+        add("Learn Ajax", false);
+    }
+
+    // 快照：複製當下的內容，不會阻擋正在寫入的執行緒
+    public List<Todo> findAll() {
+        return List.copyOf(ordered.values());
+    }
+
+    public Optional<Todo> findById(Integer id) {
+        return Optional.ofNullable(index.get(id)).map(Entry::todo);
+    }
+
+    // 整個列表的版本
+    public long getVersion() {
+        return version.get();
+    }
+
+    // 單筆的版本，找不到時回傳 empty
+    public Optional<Long> findVersion(Integer id) {
+        return Optional.ofNullable(index.get(id)).map(Entry::version);
+    }
+
+    public Todo add(String title, Boolean completed) {
+        Integer id = idGenerator.getAndIncrement();
+        // compute 對同一個 id 是原子操作，兩個 Map 的寫入不會和其他執行緒交錯
+        return index.compute(id, (key, old) -> {
+            Todo todo = new Todo(key, title, completed);
+            ordered.put(key, todo);
+            return new Entry(todo, version.incrementAndGet());
+        }).todo();
+    }
+
+    // 找不到時回傳 empty
+    public Optional<Todo> update(Integer id, String title, Boolean completed) {
+        return update(id, title, completed, null);
+    }
+
+    /**
+     * expectedVersion 不為 null 時，只有版本相符才會更新 (比對與寫入是同一個原子操作)
+     * @throws ConcurrentModificationException 版本不符
+     */
+    public Optional<Todo> update(Integer id, String title, Boolean completed, Long expectedVersion) {
+        return Optional.ofNullable(index.computeIfPresent(id, (key, old) -> {
+            checkVersion(old, expectedVersion);
+            Todo todo = new Todo(key, title, completed);
+            ordered.put(key, todo);
+            return new Entry(todo, version.incrementAndGet());
+        })).map(Entry::todo);
+    }
+
+    public void delete(Integer id) {
+        delete(id, null);
+    }
+
+    /**
+     * @throws ConcurrentModificationException 版本不符
+     */
+    public void delete(Integer id, Long expectedVersion) {
+        index.computeIfPresent(id, (key, old) -> {
+            checkVersion(old, expectedVersion);
+            ordered.remove(key);
+            version.incrementAndGet();
+            return null;
+        });
+    }
+
+    // 在 compute 裡丟出例外，Map 的內容不會被改變
+    private void checkVersion(Entry current, Long expectedVersion) {
+        if (expectedVersion != null && current.version() != expectedVersion) {
+            throw new ConcurrentModificationException("Todo " + current.todo().getId() + " 已被修改");
+        }
+    }
+}
@@ -7,9 +7,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import tw.com.eeit.ajax.ch2_3.model.Todo;
 import tw.com.eeit.ajax.ch2_3.service.TodoService;
+import tw.com.eeit.ajax.common.web.ETags;
 
 @RestController
 @RequestMapping("/ch2_3/api/todo")
@@ -18,13 +20,21 @@ public class TodoController {
     @Autowired
     private TodoService todoService;
 
+    // If-None-Match 相符時回 304 (回傳 null 表示 checkNotModified 已處理好回應)
     @GetMapping
-    public List<Todo> getAllTodos() {
+    public List<Todo> getAllTodos(WebRequest request) {
+        if (request.checkNotModified(ETags.of("todos", todoService.getVersion()))) {
+            return null;
+        }
         return todoService.getAllTodos();
     }
 
     @GetMapping("/{id}")
-    public Todo getTodoById(@PathVariable Integer id) {
-        return todoService.getTodoById(id);
+    public Todo getTodoById(@PathVariable Integer id, WebRequest request) {
+        Todo todo = todoService.getTodoById(id);
+        if (todo != null && request.checkNotModified(ETags.of("todo", id, todoService.getVersion(todo)))) {
+            return null;
+        }
+        return todo;
     }
 }
@@ -1,33 +1,73 @@
 package tw.com.eeit.ajax.ch2_3.service;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import tw.com.eeit.ajax.ch2_3.model.Todo;
 
 @Service
 public class TodoService {
 
-	private static List<Todo> todos = new ArrayList<>();
+	private static final List<Todo> DEFAULT_TODOS = List.of(
+			new Todo(1, 1, "購買牛奶", false),
+			new Todo(1, 2, "繳納電費", true),
+			new Todo(1, 3, "學習 Ajax", false),
+			new Todo(2, 4, "撰寫報告", false),
+			new Todo(2, 5, "整理房間", true));
+
+	// 不可修改：版本只在建立時計算一次，列表被改動的話 ETag 會對不上
+	private final List<Todo> todos;
+
+	// 以內容計算版本 (ETag 使用)：列表沒有修改的 API，內容不變，建立時算一次即可
+	// 與 SerializedResponseCache 相同，取 JSON 的 MD5
+	private final String version;
+	private final Map<Integer, String> versionsById;
 
-	static {
-		todos.add(new Todo(1, 1, "購買牛奶", false));
-		todos.add(new Todo(1, 2, "繳納電費", true));
-		todos.add(new Todo(1, 3, "學習 Ajax", false));
-		todos.add(new Todo(2, 4, "撰寫報告", false));
-		todos.add(new Todo(2, 5, "整理房間", true));
+	@Autowired
+	public TodoService(ObjectMapper objectMapper) {
+		this(objectMapper, DEFAULT_TODOS);
+	}
+
+	// 給 Benchmark 使用 (不經過 Spring)，指定列表內容
+	TodoService(ObjectMapper objectMapper, List<Todo> todos) {
+		this.todos = List.copyOf(todos);
+		this.version = contentHash(objectMapper, this.todos);
+		this.versionsById = this.todos.stream()
+				.collect(Collectors.toMap(Todo::getId, todo -> contentHash(objectMapper, todo)));
 	}
 
 	public List<Todo> getAllTodos() {
 		return todos;
 	}
 
+	public String getVersion() {
+		return version;
+	}
+
+	public String getVersion(Todo todo) {
+		return versionsById.get(todo.getId());
+	}
+
 	public Todo getTodoById(Integer id) {
 		return todos.stream()
 				.filter(todo -> todo.getId().equals(id))
 				.findFirst()
 				.orElse(null);
 	}
+
+	private static String contentHash(ObjectMapper objectMapper, Object value) {
+		try {
+			return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(value));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("無法計算 Todo 的版本", e);
+		}
+	}
 }
@@ -1,29 +1,60 @@
 package tw.com.eeit.ajax.ch3_1.controller;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch3_1.dto.BatchResult;
+import tw.com.eeit.ajax.ch3_1.dto.CursorPage;
+import tw.com.eeit.ajax.ch3_1.dto.OrderRollupSummary;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserWithOrders;
+import tw.com.eeit.ajax.ch3_1.dto.UserCursor;
+import tw.com.eeit.ajax.ch3_1.dto.UserSpending;
+import tw.com.eeit.ajax.ch3_1.ingest.IngestTicket;
+import tw.com.eeit.ajax.ch3_1.ingest.OrderIngestQueue;
+import tw.com.eeit.ajax.ch3_1.ingest.OrderIngestRejectedException;
 import tw.com.eeit.ajax.ch3_1.model.RestOrder;
 import tw.com.eeit.ajax.ch3_1.model.RestUser;
+import tw.com.eeit.ajax.ch3_1.rollup.OrderRollupLoader;
+import tw.com.eeit.ajax.ch3_1.search.UserNgramIndex.Field;
+import tw.com.eeit.ajax.ch3_1.service.RestBatchService;
+import tw.com.eeit.ajax.ch3_1.service.RestExportService;
 import tw.com.eeit.ajax.ch3_1.service.RestPracticeService;
+import tw.com.eeit.ajax.common.web.RecordStreamWriter;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/ch3_1")
 public class RestPracticeController {
@@ -31,42 +62,163 @@ public class RestPracticeController {
     @Autowired
     private RestPracticeService restPracticeService;
 
+    @Autowired
+    private RestBatchService restBatchService;
+
+    @Autowired
+    private RestExportService restExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderIngestQueue orderIngestQueue;
+
+    @Autowired
+    private OrderRollupLoader orderRollupLoader;
+
     // 3-1-1 & 3-1-2: 基本 CRUD (Verbs & Resources)
 
     /**
      * 取得所有使用者
      * 3-1-4: 支援 Query String 篩選 (Keyword) 與分頁
+     * field=name (預設) 或 email，指定 keyword 要比對的欄位
      */
     @GetMapping("/users")
-    public ResponseEntity<List<RestUser>> getAllUsers(
+    public ResponseEntity<List<RestUserSummary>> getAllUsers(
             @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "name") String field,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sort) {
+
+        Field searchField;
+        try {
+            searchField = Field.of(field);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // 400: 不支援的搜尋欄位
+        }
         
     	// 若有分頁需求
     	if (page >= 0 && size > 0) {
     		Pageable pageable = PageRequest.of(page, size, Sort.by(sort));
-    		Page<RestUser> pageResult = restPracticeService.getUsersWithPaging(keyword, pageable);
+    		Page<RestUserSummary> pageResult = restPracticeService.getUsersWithPaging(keyword, searchField, pageable);
     		// 注意: 直接回傳 List 會失去 Page 的 metadata (totalElements 等)，
     		// 實務上通常會 wrap 成 PageResponse DTO，但此處為求簡化直接回傳 Content。
     		return ResponseEntity.ok(pageResult.getContent());
     	}
 
-        return ResponseEntity.ok(restPracticeService.getAllUsers(keyword));
+        return ResponseEntity.ok(restPracticeService.getAllUsers(keyword, searchField));
+    }
+
+    /**
+     * 取得所有使用者 (Cursor 分頁)
+     * 帶有 after 參數時改用 keyset 分頁：第一頁帶空字串，之後帶回應中的 nextCursor
+     * 不做 count 查詢，深層頁數的速度與第一頁相同
+     */
+    @GetMapping(value = "/users", params = "after")
+    public ResponseEntity<CursorPage<RestUserSummary>> getUsersByCursor(
+            @RequestParam(required = false) String keyword,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sort) {
+
+        if (size <= 0 || !UserCursor.SORTABLE_FIELDS.contains(sort)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        UserCursor cursor = null;
+        if (!after.isEmpty()) {
+            try {
+                cursor = UserCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build(); // 400: 游標格式錯誤
+            }
+            if (!cursor.sort().equals(sort)) {
+                return ResponseEntity.badRequest().build(); // 400: 游標與排序欄位不一致
+            }
+        }
+
+        return ResponseEntity.ok(restPracticeService.getUsersAfterCursor(keyword, sort, cursor, size));
+    }
+
+    /**
+     * 取得使用者與其訂單 (?expand=orders)
+     * 不論頁面大小，固定為 分頁查詢 + count + 一次 IN 查詢訂單
+     */
+    @GetMapping(value = "/users", params = "expand=orders")
+    public ResponseEntity<List<RestUserWithOrders>> getUsersWithOrders(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sort) {
+
+        if (page < 0 || size <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        Pageable pageable = PageRequest.of(page, size, Sort.by(sort));
+        return ResponseEntity.ok(restPracticeService.getUsersWithOrders(pageable).getContent());
+    }
+
+    /**
+     * 匯出全部使用者
+     * Accept: application/x-ndjson (預設) 或 text/event-stream，一筆讀出就寫出一筆
+     */
+    @GetMapping(value = "/users:export", produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE })
+    public void exportUsers(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
+        export(accept, response, restExportService::exportUsers);
+    }
+
+    /**
+     * 匯出全部訂單 (格式同上)
+     */
+    @GetMapping(value = "/orders:export", produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE })
+    public void exportOrders(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletResponse response) throws IOException {
+        export(accept, response, restExportService::exportOrders);
+    }
+
+    private void export(String accept, HttpServletResponse response, ExportTask task) throws IOException {
+        RecordStreamWriter.Format format = RecordStreamWriter.Format.fromAccept(accept);
+        response.setContentType(format.getMediaType().toString());
+        response.setCharacterEncoding("UTF-8");
+
+        RecordStreamWriter writer = new RecordStreamWriter(objectMapper, format, response.getOutputStream());
+        try {
+            task.run(writer);
+            writer.finish();
+        } catch (IOException e) {
+            // Client 斷線: 已停止讀取 DB，不必回錯誤 (response 也已經送出一部分)
+            log.debug("匯出中斷，已送出 {} 筆: {}", writer.getCount(), e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExportTask {
+        void run(RecordStreamWriter writer) throws IOException;
     }
 
     /**
      * 取得單一使用者
      * 3-1-6: 善用 Status Code (404)
+     * 支援 If-None-Match: 版本沒變時回 304，版本號從二級快取的使用者取得 (未命中時只載入使用者，不載入訂單)
      */
     @GetMapping("/users/{id}")
-    public ResponseEntity<RestUser> getUserById(@PathVariable Long id) {
+    public ResponseEntity<RestUser> getUserById(@PathVariable Long id, WebRequest request) {
+        String etag = restPracticeService.getUserETag(id);
+        if (etag == null) {
+            return ResponseEntity.notFound().build(); // 404 Not Found
+        }
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build(); // 304 Not Modified
+        }
+
         RestUser user = restPracticeService.getUserById(id);
         if (user != null) {
-            return ResponseEntity.ok(user); // 200 OK
+            // ETag 以實際載入的版本為準
+            return ResponseEntity.ok().eTag(restPracticeService.getUserETag(user)).body(user); // 200 OK
         } else {
-            return ResponseEntity.notFound().build(); // 404 Not Found
+            return ResponseEntity.notFound().build();
         }
     }
 
@@ -88,15 +240,46 @@ public class RestPracticeController {
         return ResponseEntity.created(location).body(createdUser); // 201 Created
     }
 
+    /**
+     * 批次新增使用者
+     * POST /users:batch，一次可送數千筆，回傳逐筆結果與處理速度
+     */
+    @PostMapping("/users:batch")
+    public ResponseEntity<BatchResult> createUsers(@RequestBody List<RestUser> users) {
+        if (users.size() > RestBatchService.MAX_ITEMS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(restBatchService.createUsers(users));
+    }
+
     /**
      * 更新使用者 (整筆)
      * PUT: 冪等操作
+     * 帶 If-Match 時，ETag 不符回 412 (避免覆蓋別人的修改)
      */
     @PutMapping("/users/{id}")
-    public ResponseEntity<RestUser> updateUser(@PathVariable Long id, @RequestBody RestUser restUser) {
-        RestUser updatedUser = restPracticeService.updateUser(id, restUser);
+    public ResponseEntity<RestUser> updateUser(@PathVariable Long id, @RequestBody RestUser restUser,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        RestUser updatedUser = restPracticeService.updateUser(id, restUser, ifMatch);
         if (updatedUser != null) {
-            return ResponseEntity.ok(updatedUser);
+            return ResponseEntity.ok().eTag(restPracticeService.getUserETag(updatedUser)).body(updatedUser);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * 部分更新使用者 (JSON Merge Patch, RFC 7386)
+     * PATCH /users/{id}，Content-Type: application/merge-patch+json
+     * 只修改 body 裡出現的欄位 (name / email / active)，值為 null 表示清除
+     * 帶 If-Match 時，ETag 不符回 412
+     */
+    @PatchMapping(value = "/users/{id}", consumes = RestPracticeService.MERGE_PATCH_JSON)
+    public ResponseEntity<RestUser> patchUser(@PathVariable Long id, @RequestBody JsonNode patch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        RestUser patchedUser = restPracticeService.patchUser(id, patch, ifMatch);
+        if (patchedUser != null) {
+            return ResponseEntity.ok().eTag(restPracticeService.getUserETag(patchedUser)).body(patchedUser);
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -105,13 +288,21 @@ public class RestPracticeController {
     /**
      * 刪除使用者
      * 3-1-6: 善用 Status Code (204 No Content for success delete)
+     * 帶 If-Match 時，ETag 不符 (或使用者已不存在) 回 412
      */
     @DeleteMapping("/users/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        restPracticeService.deleteUser(id);
+    public ResponseEntity<Void> deleteUser(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        restPracticeService.deleteUser(id, ifMatch);
         return ResponseEntity.noContent().build(); // 204 No Content
     }
 
+    // If-Match 檢查通過後、commit 前被別人改掉
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Void> handleStaleWrite() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build(); // 412
+    }
+
     // 3-1-3: 結構嵌套 (Nesting)
 
     /**
@@ -119,14 +310,52 @@ public class RestPracticeController {
      * GET /users/{id}/orders
      */
     @GetMapping("/users/{userId}/orders")
-    public ResponseEntity<List<RestOrder>> getUserOrders(@PathVariable Long userId) {
-        // 先檢查 User 是否存在 (選擇性)
-        if (restPracticeService.getUserById(userId) == null) {
+    public ResponseEntity<List<RestOrder>> getUserOrders(@PathVariable Long userId, WebRequest request) {
+        // 先檢查 User 是否存在，同時取得版本號當作 ETag
+        String etag = restPracticeService.getOrdersETag(userId);
+        if (etag == null) {
              return ResponseEntity.notFound().build();
         }
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build(); // 304: 不查訂單
+        }
         
         List<RestOrder> orders = restPracticeService.getOrdersByUserId(userId);
-        return ResponseEntity.ok(orders);
+        return ResponseEntity.ok().eTag(etag).body(orders);
+    }
+
+    /**
+     * 某使用者的訂單彙總 (筆數、金額、最後下單時間，依狀態分類)
+     * GET /users/{userId}/orders/summary，由彙總表回答，不掃描訂單
+     */
+    @GetMapping("/users/{userId}/orders/summary")
+    public ResponseEntity<OrderRollupSummary> getUserOrderSummary(@PathVariable Long userId) {
+        OrderRollupSummary summary = restPracticeService.getOrderSummary(userId);
+        if (summary == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(summary);
+    }
+
+    /**
+     * 消費排行 (訂單金額合計前 N 名)
+     * GET /users/top-spenders?limit=10，由記憶體內的排行回答
+     */
+    @GetMapping("/users/top-spenders")
+    public ResponseEntity<List<UserSpending>> getTopSpenders(@RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(restPracticeService.getTopSpenders(limit));
+    }
+
+    /**
+     * 由訂單重新計算全部彙總 (修復用)
+     * POST /order-rollups:rebuild，需要 ADMIN 角色 (重建期間所有使用者的寫入都會等待)
+     */
+    @PostMapping("/order-rollups:rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildOrderRollups() {
+        return ResponseEntity.ok(Map.of("rows", orderRollupLoader.rebuild()));
     }
 
     /**
@@ -154,4 +383,70 @@ public class RestPracticeController {
             return ResponseEntity.notFound().build(); // User not found
         }
     }
+
+    /**
+     * 批次新增某使用者的訂單
+     * POST /users/{userId}/orders:batch
+     */
+    @PostMapping("/users/{userId}/orders:batch")
+    public ResponseEntity<BatchResult> createOrdersForUser(
+            @PathVariable Long userId,
+            @RequestBody List<RestOrder> orders) {
+
+        if (orders.size() > RestBatchService.MAX_ITEMS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BatchResult result = restBatchService.createOrdersForUser(userId, orders);
+        if (result == null) {
+            return ResponseEntity.notFound().build(); // User not found
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 非同步新增訂單 (尖峰時段用)
+     * POST /users/{userId}/orders:async，放進佇列後立即回 202 + 追蹤單，由背景批次寫入
+     * 佇列已滿回 429、系統關閉中回 503 (都會帶 Retry-After)
+     */
+    @PostMapping("/users/{userId}/orders:async")
+    public ResponseEntity<IngestTicket> createOrderForUserAsync(
+            @PathVariable Long userId,
+            @RequestBody RestOrder order) {
+
+        if (order.getTotalAmount() == null) {
+            return ResponseEntity.badRequest().build(); // 非同步寫入時才失敗的話，Client 不容易處理
+        }
+        if (!restPracticeService.userExists(userId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        IngestTicket ticket = orderIngestQueue.submit(userId, order);
+        URI location = ServletUriComponentsBuilder
+                .fromCurrentContextPath()
+                .path("/api/ch3_1/order-tickets/{ticketId}")
+                .buildAndExpand(ticket.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(ticket); // 202 Accepted
+    }
+
+    /**
+     * 查詢非同步新增的結果
+     * status: QUEUED / CREATED (orderId) / FAILED (error)；完成一段時間後會被清除 (404)
+     */
+    @GetMapping("/order-tickets/{ticketId}")
+    public ResponseEntity<IngestTicket> getOrderTicket(@PathVariable String ticketId) {
+        IngestTicket ticket = orderIngestQueue.getTicket(ticketId);
+        if (ticket == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ticket);
+    }
+
+    @ExceptionHandler(OrderIngestRejectedException.class)
+    public ResponseEntity<Void> handleIngestRejected(OrderIngestRejectedException e) {
+        return ResponseEntity.status(e.getStatus()) // 429 / 503
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
 }
@@ -0,0 +1,23 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * 批次新增中單一筆的結果
+ * index 對應 request body 陣列中的位置
+ */
+public record BatchItemResult(int index, Long id, String status, String error) {
+
+    public static BatchItemResult created(int index, Long id) {
+        return new BatchItemResult(index, id, "CREATED", null);
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, null, "FAILED", error);
+    }
+
+    @JsonIgnore
+    public boolean isCreated() {
+        return id != null;
+    }
+}
@@ -0,0 +1,23 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import java.util.List;
+
+/**
+ * 批次新增的回應：逐筆結果與處理速度
+ */
+public record BatchResult(
+        int total,
+        int succeeded,
+        int failed,
+        long elapsedMillis,
+        double rowsPerSecond,
+        List<BatchItemResult> items) {
+
+    public static BatchResult of(List<BatchItemResult> items, long elapsedNanos) {
+        int succeeded = (int) items.stream().filter(BatchItemResult::isCreated).count();
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        double rowsPerSecond = seconds > 0 ? succeeded / seconds : 0;
+        return new BatchResult(items.size(), succeeded, items.size() - succeeded,
+                elapsedNanos / 1_000_000, Math.round(rowsPerSecond * 10) / 10.0, items);
+    }
+}
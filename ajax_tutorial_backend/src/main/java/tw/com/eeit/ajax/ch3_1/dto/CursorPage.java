@@ -0,0 +1,10 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import java.util.List;
+
+/**
+ * Cursor 分頁的回應 (類似 Slice，不含 totalElements，因此不需要 count 查詢)
+ * nextCursor 為 null 表示已經是最後一頁
+ */
+public record CursorPage<T>(List<T> content, int size, boolean hasNext, String nextCursor) {
+}
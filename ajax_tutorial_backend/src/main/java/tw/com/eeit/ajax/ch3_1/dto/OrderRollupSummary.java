@@ -0,0 +1,37 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import tw.com.eeit.ajax.ch3_1.model.RestOrderRollup;
+
+/**
+ * 使用者的訂單彙總: 全部合計 + 依狀態分類
+ */
+public record OrderRollupSummary(
+        Long userId,
+        long orderCount,
+        double totalAmount,
+        LocalDateTime lastOrderAt,
+        List<StatusRollup> byStatus) {
+
+    public record StatusRollup(String status, long orderCount, double totalAmount, LocalDateTime lastOrderAt) {
+    }
+
+    public static OrderRollupSummary of(Long userId, List<RestOrderRollup> rollups) {
+        long orderCount = 0;
+        double totalAmount = 0;
+        LocalDateTime lastOrderAt = null;
+        List<StatusRollup> byStatus = rollups.stream()
+                .map(r -> new StatusRollup(r.getStatus(), r.getOrderCount(), r.getTotalAmount(), r.getLastOrderAt()))
+                .toList();
+        for (StatusRollup rollup : byStatus) {
+            orderCount += rollup.orderCount();
+            totalAmount += rollup.totalAmount();
+            if (rollup.lastOrderAt() != null && (lastOrderAt == null || rollup.lastOrderAt().isAfter(lastOrderAt))) {
+                lastOrderAt = rollup.lastOrderAt();
+            }
+        }
+        return new OrderRollupSummary(userId, orderCount, totalAmount, lastOrderAt, byStatus);
+    }
+}
@@ -0,0 +1,9 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 訂單投影：以 userId 取代整個 RestUser，一次 IN 查詢就能撈出整頁使用者的訂單
+ */
+public record RestOrderSummary(Long id, Long userId, Double totalAmount, String status, LocalDateTime createdAt) {
+}
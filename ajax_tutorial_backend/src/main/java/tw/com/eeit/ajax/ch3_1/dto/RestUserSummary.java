@@ -0,0 +1,8 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+/**
+ * 列表用的使用者投影 (Projection)
+ * 只查需要的欄位，不會碰到 orders，避免序列化時觸發 N+1 查詢
+ */
+public record RestUserSummary(Long id, String name, String email, Boolean active) {
+}
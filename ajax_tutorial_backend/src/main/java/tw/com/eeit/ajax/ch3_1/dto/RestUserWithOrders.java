@@ -0,0 +1,13 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import java.util.List;
+
+/**
+ * 使用者 + 訂單 的檢視 (GET /users?expand=orders)
+ */
+public record RestUserWithOrders(Long id, String name, String email, Boolean active, List<RestOrderSummary> orders) {
+
+    public static RestUserWithOrders of(RestUserSummary user, List<RestOrderSummary> orders) {
+        return new RestUserWithOrders(user.id(), user.name(), user.email(), user.active(), orders);
+    }
+}
@@ -0,0 +1,34 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Keyset 分頁的游標：記錄上一頁最後一筆的排序值與 id
+ * 對前端而言是不透明 (opaque) 的字串，只需原封不動帶回 after 參數
+ */
+public record UserCursor(String sort, String value, Long id) {
+
+    // 允許用來做 keyset 排序的欄位 (皆有 (欄位, id) 複合索引)
+    public static final Set<String> SORTABLE_FIELDS = Set.of("id", "name", "email");
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char NULL_MARK = '\u0001';
+
+    public String encode() {
+        String raw = sort + SEPARATOR + (value == null ? String.valueOf(NULL_MARK) : value) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 格式不正確時拋出 IllegalArgumentException
+    public static UserCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != 3 || !SORTABLE_FIELDS.contains(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String value = parts[1].equals(String.valueOf(NULL_MARK)) ? null : parts[1];
+        return new UserCursor(parts[0], value, Long.valueOf(parts[2]));
+    }
+}
@@ -0,0 +1,7 @@
+package tw.com.eeit.ajax.ch3_1.dto;
+
+/**
+ * 使用者的累計消費 (所有狀態的訂單合計)，消費排行用
+ */
+public record UserSpending(Long userId, double totalAmount, long orderCount) {
+}
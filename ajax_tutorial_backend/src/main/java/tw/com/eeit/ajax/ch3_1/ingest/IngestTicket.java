@@ -0,0 +1,58 @@
+package tw.com.eeit.ajax.ch3_1.ingest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+import tw.com.eeit.ajax.ch3_1.model.RestOrder;
+
+/**
+ * 非同步新增訂單的追蹤單
+ * QUEUED -> CREATED (orderId 有值) 或 FAILED (error 說明原因)
+ */
+@Getter
+public class IngestTicket {
+
+    public enum Status {
+        QUEUED, CREATED, FAILED
+    }
+
+    private final String id;
+    private final Long userId;
+
+    // 只在寫入前需要；完成後清掉，保留到過期的追蹤單不必一直拿著整筆訂單
+    @JsonIgnore
+    private volatile RestOrder order;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Long orderId;
+    private volatile String error;
+
+    // 完成時間 (System.nanoTime)，過期後由 OrderIngestQueue 清除
+    @JsonIgnore
+    private volatile long completedAt;
+
+    IngestTicket(String id, Long userId, RestOrder order) {
+        this.id = id;
+        this.userId = userId;
+        this.order = order;
+    }
+
+    void created(Long orderId) {
+        this.orderId = orderId;
+        this.order = null;
+        this.status = Status.CREATED;
+        this.completedAt = System.nanoTime();
+    }
+
+    void failed(String error) {
+        this.error = error;
+        this.order = null;
+        this.status = Status.FAILED;
+        this.completedAt = System.nanoTime();
+    }
+
+    @JsonIgnore
+    public boolean isDone() {
+        return status != Status.QUEUED;
+    }
+}
@@ -0,0 +1,251 @@
+package tw.com.eeit.ajax.ch3_1.ingest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch3_1.model.RestOrder;
+
+/**
+ * 非同步新增訂單 (write-behind)
+ * 1. API 把訂單放進有上限的佇列，立即回 202 與追蹤單 id
+ * 2. 背景 worker 一次取出目前排隊的所有訂單 (最多 max-batch 筆)，用一個交易寫入 (group commit)
+ * 3. 佇列滿時回 429；關閉時先停止收件 (503)，把佇列中剩下的訂單全部寫完才結束
+ *
+ * 追蹤單只存在記憶體，完成後保留 ticket-ttl 供查詢，重啟後就查不到
+ * 完成的追蹤單超過 max-completed-tickets 筆時，不等過期就先清掉最舊的 (記憶體上限與流量無關)
+ */
+@Slf4j
+@Component
+public class OrderIngestQueue implements SmartLifecycle {
+
+    // 比 Web Server 更晚停止: 先停止接收 HTTP 請求，再把佇列寫完
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final long POLL_MILLIS = 200;
+    // 關閉逾時中斷 worker 後，最多再等這麼久 (寫到一半的交易無法被中斷)
+    private static final long INTERRUPT_GRACE_MILLIS = 5_000;
+
+    private final OrderIngestWriter writer;
+    private final BlockingQueue<IngestTicket> queue;
+    private final int maxBatch;
+    private final long ticketTtlNanos;
+    private final int maxCompletedTickets;
+    private final long shutdownTimeoutMillis;
+
+    private final Map<String, IngestTicket> tickets = new ConcurrentHashMap<>();
+    // 依完成順序排列，用來清除過期的追蹤單
+    private final Queue<IngestTicket> completed = new ConcurrentLinkedQueue<>();
+    // completed 的筆數 (ConcurrentLinkedQueue.size() 是 O(n))，只有 worker thread 會修改
+    private int completedCount;
+
+    private final Counter created;
+    private final Counter failed;
+    private final Counter rejected;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean accepting;
+    private Thread worker;
+
+    public OrderIngestQueue(OrderIngestWriter writer, MeterRegistry meterRegistry,
+            @Value("${app.order-ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.order-ingest.max-batch:500}") int maxBatch,
+            @Value("${app.order-ingest.ticket-ttl:10m}") Duration ticketTtl,
+            @Value("${app.order-ingest.max-completed-tickets:100000}") int maxCompletedTickets,
+            @Value("${app.order-ingest.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.ticketTtlNanos = ticketTtl.toNanos();
+        this.maxCompletedTickets = maxCompletedTickets;
+        this.shutdownTimeoutMillis = shutdownTimeout.toMillis();
+
+        Gauge.builder("ch3_1.order.ingest.queue.size", queue, Queue::size).register(meterRegistry);
+        Gauge.builder("ch3_1.order.ingest.tickets", tickets, Map::size).register(meterRegistry);
+        this.created = Counter.builder("ch3_1.order.ingest.orders").tag("result", "created").register(meterRegistry);
+        this.failed = Counter.builder("ch3_1.order.ingest.orders").tag("result", "failed").register(meterRegistry);
+        this.rejected = Counter.builder("ch3_1.order.ingest.rejected").register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("ch3_1.order.ingest.batch.size").register(meterRegistry);
+    }
+
+    /**
+     * 放進佇列，回傳追蹤單
+     * @throws OrderIngestRejectedException 佇列已滿 (429) 或關閉中 (503)
+     */
+    public IngestTicket submit(Long userId, RestOrder order) {
+        if (!accepting) {
+            throw shuttingDown();
+        }
+        IngestTicket ticket = new IngestTicket(UUID.randomUUID().toString(), userId, order);
+        tickets.put(ticket.getId(), ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.getId());
+            rejected.increment();
+            throw new OrderIngestRejectedException(HttpStatus.TOO_MANY_REQUESTS, 1, "訂單佇列已滿，請稍後再試");
+        }
+        // 放進去的同時剛好開始關閉: 若 worker 還沒取走就收回，避免 worker 結束後留在佇列裡
+        if (!accepting && queue.remove(ticket)) {
+            tickets.remove(ticket.getId());
+            throw shuttingDown();
+        }
+        return ticket;
+    }
+
+    // 查無 (或已過期) 時回傳 null
+    public IngestTicket getTicket(String id) {
+        return tickets.get(id);
+    }
+
+    private OrderIngestRejectedException shuttingDown() {
+        return new OrderIngestRejectedException(HttpStatus.SERVICE_UNAVAILABLE, 5, "系統關閉中，請稍後再試");
+    }
+
+    // --- Worker ---
+
+    private void drainLoop() {
+        List<IngestTicket> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            IngestTicket first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // 關閉逾時被中斷: 剩下的訂單不再寫入
+                Thread.currentThread().interrupt();
+                failRemaining();
+                return;
+            }
+            if (first == null) {
+                if (!accepting) {
+                    return; // 已停止收件且佇列已空
+                }
+                purgeExpired();
+                continue;
+            }
+
+            // 取出目前排隊的所有訂單；寫入期間新進來的訂單會累積成下一批
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            writeBatch(batch);
+            batch.clear();
+            purgeExpired();
+        }
+    }
+
+    private void writeBatch(List<IngestTicket> batch) {
+        batchSizes.record(batch.size());
+        try {
+            writer.write(batch);
+            batch.forEach(this::markCommitted);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                log.warn("訂單寫入失敗 (user {}): {}", batch.get(0).getUserId(), e.getMessage());
+                markFailed(batch.get(0), "寫入失敗");
+                return;
+            }
+            // 整批 rollback: 改成逐筆重試，只讓有問題的那幾筆失敗
+            log.warn("批次寫入失敗 ({} 筆)，改為逐筆寫入: {}", batch.size(), e.getMessage());
+            for (IngestTicket ticket : batch) {
+                writeBatch(List.of(ticket));
+            }
+        }
+    }
+
+    // 使用者不存在的追蹤單已在 writer 標記 FAILED
+    private void markCommitted(IngestTicket ticket) {
+        if (ticket.isDone()) {
+            failed.increment();
+        } else {
+            ticket.created(ticket.getOrder().getId());
+            created.increment();
+        }
+        addCompleted(ticket);
+    }
+
+    private void markFailed(IngestTicket ticket, String error) {
+        ticket.failed(error);
+        failed.increment();
+        addCompleted(ticket);
+    }
+
+    private void addCompleted(IngestTicket ticket) {
+        completed.add(ticket);
+        completedCount++;
+    }
+
+    private void failRemaining() {
+        IngestTicket ticket;
+        while ((ticket = queue.poll()) != null) {
+            markFailed(ticket, "系統關閉，訂單未寫入");
+        }
+    }
+
+    // 過期或超過筆數上限的追蹤單，從最舊的開始清
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        IngestTicket oldest;
+        while ((oldest = completed.peek()) != null
+                && (completedCount > maxCompletedTickets || now - oldest.getCompletedAt() > ticketTtlNanos)) {
+            completed.poll();
+            completedCount--;
+            tickets.remove(oldest.getId());
+        }
+    }
+
+    // --- SmartLifecycle ---
+
+    @Override
+    public void start() {
+        accepting = true;
+        worker = new Thread(this::drainLoop, "order-ingest");
+        // stop() 等待有上限，worker 還卡在寫入時不能讓 JVM 無法結束
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        log.info("訂單佇列停止收件，剩餘 {} 筆寫入中", queue.size());
+        try {
+            worker.join(shutdownTimeoutMillis);
+            if (worker.isAlive()) {
+                log.warn("訂單佇列在 {} ms 內未寫完，剩餘 {} 筆放棄", shutdownTimeoutMillis, queue.size());
+                worker.interrupt();
+                worker.join(INTERRUPT_GRACE_MILLIS);
+                if (worker.isAlive()) {
+                    log.warn("訂單佇列的 worker 在中斷後 {} ms 內仍未結束，不再等待", INTERRUPT_GRACE_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("訂單佇列已停止");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return worker != null && worker.isAlive();
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,22 @@
+package tw.com.eeit.ajax.ch3_1.ingest;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+/**
+ * 佇列已滿 (429) 或系統關閉中 (503)，請 Client 稍後重試
+ */
+@Getter
+public class OrderIngestRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final HttpStatus status;
+    private final int retryAfterSeconds;
+
+    public OrderIngestRejectedException(HttpStatus status, int retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,82 @@
+package tw.com.eeit.ajax.ch3_1.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import tw.com.eeit.ajax.ch3_1.model.RestOrder;
+import tw.com.eeit.ajax.ch3_1.model.RestUser;
+import tw.com.eeit.ajax.ch3_1.rollup.OrderRollupService;
+import tw.com.eeit.ajax.ch3_1.service.RestUserLookups;
+
+/**
+ * 把一批追蹤單寫進 DB (一批一個交易 = group commit)
+ * - 同一位使用者在這批裡只鎖一次、版本只 +1 (與 orders:batch 相同)
+ * - INSERT 由 JDBC batch 合併送出，每 batch_size 筆 flush + clear
+ * - 訂單彙總 (rest_order_rollups) 每位使用者更新一次
+ */
+@Service
+public class OrderIngestWriter {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    private final OrderRollupService orderRollupService;
+    private final RestUserLookups userLookups;
+
+    public OrderIngestWriter(OrderRollupService orderRollupService, RestUserLookups userLookups) {
+        this.orderRollupService = orderRollupService;
+        this.userLookups = userLookups;
+    }
+
+    // 找不到使用者的追蹤單直接標記 FAILED；其餘的 order id 在 commit 後由呼叫端標記 CREATED
+    @Transactional
+    public void write(List<IngestTicket> tickets) {
+        // 依 user id 順序上鎖，避免與其他交易互相等待 (deadlock)
+        Map<Long, List<IngestTicket>> byUser = tickets.stream()
+                .collect(Collectors.groupingBy(IngestTicket::getUserId, TreeMap::new, Collectors.toList()));
+
+        int pending = 0;
+        for (Map.Entry<Long, List<IngestTicket>> entry : byUser.entrySet()) {
+            Long userId = entry.getKey();
+            RestUser user = entityManager.find(RestUser.class, userId, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+            if (user == null) {
+                entry.getValue().forEach(ticket -> ticket.failed("使用者不存在"));
+                continue;
+            }
+
+            List<RestOrder> orders = new ArrayList<>(entry.getValue().size());
+            for (IngestTicket ticket : entry.getValue()) {
+                RestOrder order = ticket.getOrder();
+                order.setId(null);
+                order.setVersion(null); // 上一次寫入 rollback 後重試時可能已有值
+                order.setUser(user);
+                order.setStatus("CREATED");
+                entityManager.persist(order);
+                orders.add(order);
+
+                if (++pending % batchSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    user = entityManager.getReference(RestUser.class, userId);
+                }
+            }
+            orderRollupService.recordCreated(userId, orders);
+            userLookups.invalidate(userId);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -3,17 +3,23 @@ package tw.com.eeit.ajax.ch3_1.model;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -21,11 +27,15 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Entity
 @Table(name = "rest_orders")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "rest_orders")
 public class RestOrder implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // 與 RestUser 相同，改用 pooled sequence 才能批次 insert
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rest_orders_seq")
+    @SequenceGenerator(name = "rest_orders_seq", sequenceName = "rest_orders_seq", allocationSize = 50)
     private Long id;
 
     private Double totalAmount;
@@ -34,6 +44,10 @@ public class RestOrder implements Serializable {
     @CreationTimestamp
     private LocalDateTime createdAt;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     // 防止無窮迴圈
     @JsonIgnoreProperties("orders")
     @ManyToOne
@@ -0,0 +1,58 @@
+package tw.com.eeit.ajax.ch3_1.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 每位使用者、每種訂單狀態的彙總 (筆數、金額、最後下單時間)
+ * 與新增訂單在同一個交易內累加 (見 OrderRollupService)，查詢時不必掃描 rest_orders
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "rest_order_rollups")
+@IdClass(RestOrderRollup.Key.class)
+public class RestOrderRollup implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // 主鍵 (user_id, status)，依 user_id 查詢可直接使用主鍵索引
+    @Id
+    private Long userId;
+    @Id
+    private String status;
+
+    private long orderCount;
+    private double totalAmount;
+    private LocalDateTime lastOrderAt;
+
+    public RestOrderRollup(Long userId, String status) {
+        this.userId = userId;
+        this.status = status;
+    }
+
+    public void add(long count, double amount, LocalDateTime orderedAt) {
+        orderCount += count;
+        totalAmount += amount;
+        if (orderedAt != null && (lastOrderAt == null || orderedAt.isAfter(lastOrderAt))) {
+            lastOrderAt = orderedAt;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long userId;
+        private String status;
+    }
+}
@@ -3,37 +3,66 @@ package tw.com.eeit.ajax.ch3_1.model;
 import java.io.Serializable;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import tw.com.eeit.ajax.ch3_1.search.RestUserIndexListener;
 
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "rest_users")
+// (排序欄位, id) 複合索引，供 keyset 分頁使用
+@Table(name = "rest_users", indexes = {
+        @Index(name = "idx_rest_users_name_id", columnList = "name, id"),
+        @Index(name = "idx_rest_users_email_id", columnList = "email, id")
+})
+// 新增 / 修改 / 刪除時同步更新 trigram 關鍵字索引
+@EntityListeners(RestUserIndexListener.class)
+// 二級快取：findById 命中時不查 DB
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "rest_users")
+// UPDATE 只包含有改變的欄位 (+ version)，部分更新 (PATCH) 不會把整筆資料送回 DB
+@DynamicUpdate
 public class RestUser implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // 使用 Sequence (pooled, 一次取 50 個 id)，IDENTITY 會讓 Hibernate 無法 JDBC batch insert
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rest_users_seq")
+    @SequenceGenerator(name = "rest_users_seq", sequenceName = "rest_users_seq", allocationSize = 50)
     private Long id;
 
     private String name;
     private String email;
     private Boolean active = true;
 
+    // 樂觀鎖版本，也是 ETag 的來源 (新增訂單時也會 +1，代表 orders 有變動)
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     // 防止無窮迴圈 & 避免 lazy loading 序列化錯誤
     @JsonIgnoreProperties("user")
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "rest_user_orders")
     private List<RestOrder> orders;
 
     public RestUser(String name, String email) {
@@ -1,12 +1,35 @@
 package tw.com.eeit.ajax.ch3_1.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
+import tw.com.eeit.ajax.ch3_1.dto.RestOrderSummary;
 import tw.com.eeit.ajax.ch3_1.model.RestOrder;
 
 public interface RestOrderRepository extends JpaRepository<RestOrder, Long> {
-    // 3-1-3: 找出該 User 的所有訂單
+    // 3-1-3: 找出該 User 的所有訂單 (user 一起 join，不會再逐筆查詢)
+    // 查詢快取只存訂單 id，實際資料由 Entity 快取提供；rest_orders 有寫入時自動失效
+    @EntityGraph(attributePaths = "user")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<RestOrder> findByUserId(Long userId);
+
+    // 一次 IN 查詢取得多位使用者的訂單
+    @Query("select new tw.com.eeit.ajax.ch3_1.dto.RestOrderSummary(o.id, o.user.id, o.totalAmount, o.status, o.createdAt) "
+            + "from RestOrder o where o.user.id in :userIds order by o.id")
+    List<RestOrderSummary> findSummariesByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    // 匯出用: 逐筆讀取投影 (需在交易內使用並關閉 Stream)
+    @Query("select new tw.com.eeit.ajax.ch3_1.dto.RestOrderSummary(o.id, o.user.id, o.totalAmount, o.status, o.createdAt) "
+            + "from RestOrder o order by o.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<RestOrderSummary> streamSummariesBy();
 }
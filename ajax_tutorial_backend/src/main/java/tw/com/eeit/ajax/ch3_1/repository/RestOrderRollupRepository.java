@@ -0,0 +1,39 @@
+package tw.com.eeit.ajax.ch3_1.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import tw.com.eeit.ajax.ch3_1.dto.UserSpending;
+import tw.com.eeit.ajax.ch3_1.model.RestOrderRollup;
+
+public interface RestOrderRollupRepository extends JpaRepository<RestOrderRollup, RestOrderRollup.Key> {
+
+    // 主鍵前綴 (user_id) 查詢，筆數 = 該使用者的訂單狀態種類數
+    List<RestOrderRollup> findByUserIdOrderByStatus(Long userId);
+
+    @Modifying
+    @Query("delete from RestOrderRollup r where r.userId = :userId")
+    int deleteByUserIdInBulk(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from RestOrderRollup r where r.userId in :userIds")
+    int deleteByUserIdInInBulk(@Param("userIds") Collection<Long> userIds);
+
+    // 每位使用者的合計，重建消費排行用
+    @Query("select new tw.com.eeit.ajax.ch3_1.dto.UserSpending(r.userId, sum(r.totalAmount), sum(r.orderCount)) "
+            + "from RestOrderRollup r group by r.userId")
+    List<UserSpending> sumByUser();
+
+    // 重建: 由 rest_orders 重新計算指定使用者 (一句 INSERT ... SELECT ... GROUP BY，資料不經過應用程式)
+    @Modifying
+    @Query("insert into RestOrderRollup (userId, status, orderCount, totalAmount, lastOrderAt) "
+            + "select o.user.id, o.status, count(o), coalesce(sum(o.totalAmount), 0), max(o.createdAt) "
+            + "from RestOrder o where o.user.id in :userIds and o.status is not null "
+            + "group by o.user.id, o.status")
+    int insertFromOrders(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,16 @@
+package tw.com.eeit.ajax.ch3_1.repository;
+
+import java.util.List;
+
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
+import tw.com.eeit.ajax.ch3_1.dto.UserCursor;
+
+/**
+ * Keyset (Cursor) 分頁
+ * 以 WHERE (sort, id) > (上一頁最後一筆) 取代 OFFSET，越後面的頁數也不會變慢
+ */
+public interface RestUserKeysetRepository {
+
+    // after 為 null 表示第一頁
+    List<RestUserSummary> findAfter(String keyword, String sort, UserCursor after, int limit);
+}
@@ -0,0 +1,81 @@
+package tw.com.eeit.ajax.ch3_1.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
+import tw.com.eeit.ajax.ch3_1.dto.UserCursor;
+import tw.com.eeit.ajax.ch3_1.model.RestUser;
+
+public class RestUserKeysetRepositoryImpl implements RestUserKeysetRepository {
+
+    private static final char ESCAPE = '\\';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<RestUserSummary> findAfter(String keyword, String sort, UserCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RestUserSummary> query = cb.createQuery(RestUserSummary.class);
+        Root<RestUser> user = query.from(RestUser.class);
+        Path<Long> id = user.get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        if (keyword != null && !keyword.isEmpty()) {
+            where.add(cb.like(user.get("name"), "%" + escapeLike(keyword) + "%", ESCAPE));
+        }
+
+        if (sort.equals("id")) {
+            if (after != null) {
+                where.add(cb.greaterThan(id, after.id()));
+            }
+            query.orderBy(cb.asc(id));
+        } else {
+            Path<String> field = user.get(sort);
+            if (after != null) {
+                where.add(afterKey(cb, field, id, after));
+            }
+            query.orderBy(cb.asc(field), cb.asc(id));
+        }
+
+        // 只 select 列表需要的欄位 (不會碰到 orders)
+        query.select(cb.construct(RestUserSummary.class,
+                user.get("id"), user.get("name"), user.get("email"), user.get("active")))
+                .where(where.toArray(new Predicate[0]));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // (field, id) > (value, lastId)；NULL 在 H2 / SQL Server 的 ASC 排序中都排在最前面
+    private Predicate afterKey(CriteriaBuilder cb, Path<String> field, Path<Long> id, UserCursor after) {
+        if (after.value() == null) {
+            return cb.or(
+                    cb.and(cb.isNull(field), cb.greaterThan(id, after.id())),
+                    cb.isNotNull(field));
+        }
+        return cb.or(
+                cb.greaterThan(field, after.value()),
+                cb.and(cb.equal(field, after.value()), cb.greaterThan(id, after.id())));
+    }
+
+    // 關鍵字當一般文字比對：% 與 _ 不是萬用字元
+    private static String escapeLike(String keyword) {
+        StringBuilder escaped = new StringBuilder(keyword.length() + 8);
+        for (char c : keyword.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
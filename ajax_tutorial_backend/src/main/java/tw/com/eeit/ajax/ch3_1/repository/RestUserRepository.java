@@ -1,15 +1,58 @@
 package tw.com.eeit.ajax.ch3_1.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
 import tw.com.eeit.ajax.ch3_1.model.RestUser;
 
-public interface RestUserRepository extends JpaRepository<RestUser, Long> {
+public interface RestUserRepository extends JpaRepository<RestUser, Long>, RestUserKeysetRepository {
     // 3-1-4: 支援 Keyword 搜尋
     List<RestUser> findByNameContaining(String keyword);
     Page<RestUser> findByNameContaining(String keyword, Pageable pageable);
+
+    // 列表用投影：只 select 需要的欄位
+    List<RestUserSummary> findSummariesBy();
+    Page<RestUserSummary> findSummariesBy(Pageable pageable);
+    List<RestUserSummary> findSummariesByNameContaining(String keyword);
+    Page<RestUserSummary> findSummariesByNameContaining(String keyword, Pageable pageable);
+    List<RestUserSummary> findSummariesByEmailContaining(String keyword);
+    Page<RestUserSummary> findSummariesByEmailContaining(String keyword, Pageable pageable);
+
+    // trigram 索引找出候選 id 後，只對這些 id 做 LIKE 確認 (走主鍵，不掃全表)
+    List<RestUserSummary> findSummariesByIdInAndNameContaining(Collection<Long> ids, String keyword);
+    Page<RestUserSummary> findSummariesByIdInAndNameContaining(Collection<Long> ids, String keyword, Pageable pageable);
+    List<RestUserSummary> findSummariesByIdInAndEmailContaining(Collection<Long> ids, String keyword);
+    Page<RestUserSummary> findSummariesByIdInAndEmailContaining(Collection<Long> ids, String keyword, Pageable pageable);
+
+    // 依 id 分批讀取，重建索引用
+    List<RestUserSummary> findSummariesByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // 匯出用: 逐筆讀取投影 (需在交易內使用並關閉 Stream)，不會進入 Persistence Context
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<RestUserSummary> streamSummariesByOrderByIdAsc();
+
+    // 新增訂單時鎖住使用者並讓版本 +1 (select ... for update)，同一位使用者的新增訂單會排隊進行
+    @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+    Optional<RestUser> findForUpdateById(Long id);
+
+    // 重建訂單彙總時依 id 順序鎖住全部使用者 (select id ... for update，不載入 Entity)
+    // 與 findForUpdateById 互斥：重建期間新增訂單會等重建完成，順序固定所以不會互相 deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id from RestUser u order by u.id")
+    List<Long> lockAllIdsInIdOrder();
 }
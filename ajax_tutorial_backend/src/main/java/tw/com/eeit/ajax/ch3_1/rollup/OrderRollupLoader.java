@@ -0,0 +1,83 @@
+package tw.com.eeit.ajax.ch3_1.rollup;
+
+import java.util.Set;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch3_1.repository.RestOrderRepository;
+import tw.com.eeit.ajax.ch3_1.repository.RestOrderRollupRepository;
+
+/**
+ * 啟動完成後在背景載入消費排行
+ * 彙總表是空的但已有訂單時 (例如剛加上這個功能)，先從 rest_orders 重建
+ */
+@Slf4j
+@Component
+public class OrderRollupLoader {
+
+    private static final int MAX_REREAD_ROUNDS = 100;
+
+    private final OrderRollupService rollupService;
+    private final RestOrderRollupRepository rollupRepository;
+    private final RestOrderRepository orderRepository;
+    private final UserSpendingRanking ranking;
+
+    public OrderRollupLoader(OrderRollupService rollupService, RestOrderRollupRepository rollupRepository,
+            RestOrderRepository orderRepository, UserSpendingRanking ranking) {
+        this.rollupService = rollupService;
+        this.rollupRepository = rollupRepository;
+        this.orderRepository = orderRepository;
+        this.ranking = ranking;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            if (rollupRepository.count() == 0 && orderRepository.count() > 0) {
+                rebuild();
+            } else {
+                reloadRanking();
+            }
+        } catch (RuntimeException e) {
+            log.warn("訂單彙總載入失敗", e);
+        }
+    }
+
+    // 重建彙總表並重新載入排行，回傳彙總筆數
+    public int rebuild() {
+        long start = System.nanoTime();
+        int rows = rollupService.rebuild();
+        reloadRanking();
+        log.info("訂單彙總重建完成: {} 筆, {} ms", rows, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    /**
+     * 重新載入排行
+     * 快照與增量之間有兩種競爭，都會讓使用者被記錄為 touched，從 DB 再讀一次：
+     * - 讀 DB 之後才抵達的增量，被 put() 的舊值覆蓋 (漏算)
+     * - 讀 DB 之前已 commit、之後才抵達的增量，又加在已包含它的值上 (重複計算)
+     * 重讀期間也可能再有增量，所以一直重讀到沒有使用者被更新為止
+     */
+    private void reloadRanking() {
+        ranking.beginReload();
+        Set<Long> touched = ranking.finishReload(rollupRepository.sumByUser());
+        for (int round = 1; !touched.isEmpty(); round++) {
+            if (round > MAX_REREAD_ROUNDS) {
+                // 寫入量一直很高時不再等待；剩下的使用者下次重新載入 (或 rebuild) 時修正
+                log.warn("消費排行重新載入後仍有 {} 位使用者持續被更新，停止重讀", touched.size());
+                ranking.endReload();
+                return;
+            }
+            for (Long userId : touched) {
+                ranking.put(rollupService.getSpending(userId));
+            }
+            touched = ranking.nextTouched();
+        }
+    }
+}
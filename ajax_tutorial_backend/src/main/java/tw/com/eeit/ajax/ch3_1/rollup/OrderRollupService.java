@@ -0,0 +1,142 @@
+package tw.com.eeit.ajax.ch3_1.rollup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import tw.com.eeit.ajax.ch3_1.dto.OrderRollupSummary;
+import tw.com.eeit.ajax.ch3_1.dto.UserSpending;
+import tw.com.eeit.ajax.ch3_1.model.RestOrder;
+import tw.com.eeit.ajax.ch3_1.model.RestOrderRollup;
+import tw.com.eeit.ajax.ch3_1.repository.RestOrderRollupRepository;
+import tw.com.eeit.ajax.ch3_1.repository.RestUserRepository;
+
+/**
+ * 訂單彙總 (rest_order_rollups) 的維護與查詢
+ * - 新增訂單的每一條路徑 (單筆、orders:batch、orders:async) 都在同一個交易內呼叫 recordCreated
+ * - 呼叫端已用 PESSIMISTIC_FORCE_INCREMENT 鎖住使用者，同一位使用者的彙總不會被同時修改
+ * - 消費排行在 commit 後才更新，rollback 不會影響排行
+ */
+@Service
+public class OrderRollupService {
+
+    // 重建時每次 delete / insert 的使用者數 (IN 清單大小)
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final RestOrderRollupRepository rollupRepository;
+    private final RestUserRepository userRepository;
+    private final UserSpendingRanking ranking;
+
+    public OrderRollupService(RestOrderRollupRepository rollupRepository, RestUserRepository userRepository,
+            UserSpendingRanking ranking) {
+        this.rollupRepository = rollupRepository;
+        this.userRepository = userRepository;
+        this.ranking = ranking;
+    }
+
+    public void recordCreated(RestOrder order) {
+        recordCreated(order.getUser().getId(), List.of(order));
+    }
+
+    // 同一位使用者的多筆訂單，每種狀態只讀寫一次彙總
+    public void recordCreated(Long userId, List<RestOrder> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        Map<String, List<RestOrder>> byStatus = orders.stream()
+                .collect(Collectors.groupingBy(RestOrder::getStatus));
+
+        double totalAmount = 0;
+        for (Map.Entry<String, List<RestOrder>> entry : byStatus.entrySet()) {
+            double amount = entry.getValue().stream()
+                    .map(RestOrder::getTotalAmount)
+                    .filter(Objects::nonNull)
+                    .mapToDouble(Double::doubleValue)
+                    .sum();
+            // @CreationTimestamp 在 INSERT 時才產生，還沒 flush 的訂單以現在時間代替
+            LocalDateTime lastOrderAt = entry.getValue().stream()
+                    .map(order -> order.getCreatedAt() != null ? order.getCreatedAt() : LocalDateTime.now())
+                    .max(LocalDateTime::compareTo)
+                    .orElse(null);
+
+            RestOrderRollup.Key key = new RestOrderRollup.Key(userId, entry.getKey());
+            RestOrderRollup rollup = entityManager.find(RestOrderRollup.class, key);
+            if (rollup == null) {
+                rollup = new RestOrderRollup(userId, entry.getKey());
+                entityManager.persist(rollup);
+            }
+            rollup.add(entry.getValue().size(), amount, lastOrderAt);
+            totalAmount += amount;
+        }
+
+        double amount = totalAmount;
+        afterCommit(() -> ranking.add(userId, amount, orders.size()));
+    }
+
+    // 刪除使用者時呼叫 (訂單由 cascade 一起刪除)
+    public void removeUser(Long userId) {
+        rollupRepository.deleteByUserIdInBulk(userId);
+        afterCommit(() -> ranking.remove(userId));
+    }
+
+    // 讀取主鍵前綴，與訂單數量無關
+    public OrderRollupSummary getSummary(Long userId) {
+        return OrderRollupSummary.of(userId, rollupRepository.findByUserIdOrderByStatus(userId));
+    }
+
+    public List<UserSpending> getTopSpenders(int limit) {
+        return ranking.top(limit);
+    }
+
+    // 單一使用者的合計 (從彙總表)
+    UserSpending getSpending(Long userId) {
+        OrderRollupSummary summary = getSummary(userId);
+        return new UserSpending(userId, summary.totalAmount(), summary.orderCount());
+    }
+
+    /**
+     * 由 rest_orders 重新計算全部彙總 (修復用)
+     * 先依 id 順序鎖住所有使用者 (與新增訂單鎖的是同一列)，再逐批 delete + insert：
+     * - 已持有使用者鎖的新增訂單先 commit，重建讀得到它的訂單；之後的新增訂單等重建 commit 後才累加
+     * - 鎖定之後才建立的使用者不在重建範圍內，它的彙總只由新增訂單維護，不會撞到相同主鍵
+     * 重建期間所有使用者的寫入都會等待，請在寫入量低的時候執行
+     * @return 重新計算的彙總筆數
+     */
+    @Transactional
+    public int rebuild() {
+        List<Long> userIds = userRepository.lockAllIdsInIdOrder();
+        int rows = 0;
+        for (int from = 0; from < userIds.size(); from += REBUILD_CHUNK_SIZE) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + REBUILD_CHUNK_SIZE, userIds.size()));
+            rollupRepository.deleteByUserIdInInBulk(chunk);
+            rows += rollupRepository.insertFromOrders(chunk);
+        }
+        return rows;
+    }
+
+    // 交易 rollback 時排行不應該被改到
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package tw.com.eeit.ajax.ch3_1.rollup;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import tw.com.eeit.ajax.ch3_1.dto.UserSpending;
+
+/**
+ * 消費排行 (記憶體內)
+ * Skip List 依 (金額 DESC, userId ASC) 排序，更新 O(log n)，取前 N 名 O(log n + N)
+ * 由 OrderRollupService 在交易 commit 後以「增量」更新，啟動與重建時由 OrderRollupLoader 重新載入
+ */
+@Component
+public class UserSpendingRanking {
+
+    private static final Comparator<UserSpending> RANK = Comparator
+            .comparingDouble(UserSpending::totalAmount).reversed()
+            .thenComparing(UserSpending::userId);
+
+    private final Map<Long, UserSpending> byUser = new ConcurrentHashMap<>();
+    private final NavigableSet<UserSpending> ranked = new ConcurrentSkipListSet<>(RANK);
+
+    // 重新載入期間被增量更新過的使用者，載入後需要再從 DB 讀一次
+    private Set<Long> touchedDuringReload;
+
+    public UserSpendingRanking(MeterRegistry meterRegistry) {
+        Gauge.builder("ch3_1.order.rollup.ranking.users", byUser, Map::size).register(meterRegistry);
+    }
+
+    // 前 N 名 (讀取不加鎖，更新進行中時可能看到舊的排名)
+    public List<UserSpending> top(int limit) {
+        return ranked.stream().limit(limit).toList();
+    }
+
+    // 增量: 新增訂單後 (commit 後) 呼叫，多筆交易的順序不影響結果
+    public synchronized void add(Long userId, double amount, long count) {
+        UserSpending current = byUser.get(userId);
+        UserSpending updated = current == null
+                ? new UserSpending(userId, amount, count)
+                : new UserSpending(userId, current.totalAmount() + amount, current.orderCount() + count);
+        replace(current, updated);
+        if (touchedDuringReload != null) {
+            touchedDuringReload.add(userId);
+        }
+    }
+
+    public synchronized void remove(Long userId) {
+        replace(byUser.get(userId), null);
+        if (touchedDuringReload != null) {
+            touchedDuringReload.add(userId);
+        }
+    }
+
+    // 以 DB 的值覆蓋 (重新載入後修正被增量更新過的使用者)
+    synchronized void put(UserSpending spending) {
+        replace(byUser.get(spending.userId()), spending.orderCount() > 0 ? spending : null);
+    }
+
+    // --- 重新載入 (由 OrderRollupLoader 呼叫) ---
+
+    synchronized void beginReload() {
+        touchedDuringReload = new HashSet<>();
+    }
+
+    /**
+     * 以 DB 的快照取代目前的排行
+     * 載入後仍繼續記錄被增量更新的使用者，直到 nextTouched() 回傳空集合
+     * @return 載入期間被增量更新過的使用者 (快照中的值可能已過時，呼叫端需再讀一次)
+     */
+    synchronized Set<Long> finishReload(List<UserSpending> snapshot) {
+        byUser.clear();
+        ranked.clear();
+        for (UserSpending spending : snapshot) {
+            replace(null, spending);
+        }
+        return nextTouched();
+    }
+
+    /**
+     * 上次呼叫之後被增量更新過的使用者
+     * 呼叫端讀 DB 與 put() 之間抵達的增量會讓使用者再被記錄一次，下一輪再讀
+     * 回傳空集合時停止記錄，重新載入結束
+     */
+    synchronized Set<Long> nextTouched() {
+        Set<Long> touched = touchedDuringReload;
+        touchedDuringReload = touched.isEmpty() ? null : new HashSet<>();
+        return touched;
+    }
+
+    // 不等 touched 清空就結束重新載入
+    synchronized void endReload() {
+        touchedDuringReload = null;
+    }
+
+    private void replace(UserSpending current, UserSpending updated) {
+        if (current != null) {
+            ranked.remove(current);
+            byUser.remove(current.userId());
+        }
+        if (updated != null) {
+            ranked.add(updated);
+            byUser.put(updated.userId(), updated);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package tw.com.eeit.ajax.ch3_1.search;
+
+import java.util.Arrays;
+
+/**
+ * 排序好的 int id 陣列 (不用 List&lt;Integer&gt;，每個 id 只佔 4 bytes)
+ * 新使用者的 id 通常是遞增的，add 大多只是 append
+ * 只會新增 (刪除的 id 由 UserNgramIndex 查詢時濾掉，重建時整個重來)
+ * 非 thread-safe，由 UserNgramIndex 的 lock 保護
+ */
+class IntPostingList {
+
+    private int[] ids = new int[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean add(int id) {
+        if (size > 0 && ids[size - 1] < id) {
+            ensureCapacity();
+            ids[size++] = id;
+            return true;
+        }
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos >= 0) {
+            return false;
+        }
+        int insertAt = -pos - 1;
+        ensureCapacity();
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+        return true;
+    }
+
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    int get(int index) {
+        return ids[index];
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+    }
+}
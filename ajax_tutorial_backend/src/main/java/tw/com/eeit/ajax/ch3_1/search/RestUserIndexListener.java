@@ -0,0 +1,55 @@
+package tw.com.eeit.ajax.ch3_1.search;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import tw.com.eeit.ajax.ch3_1.model.RestUser;
+
+/**
+ * RestUser 的 JPA Entity Listener，讓 trigram 索引跟著新增 / 修改 / 刪除更新
+ * (createUser、updateUser、deleteUser、批次新增都會經過這裡)
+ * Spring Boot 會用 Spring Bean 建立 Entity Listener，所以可以注入其他 Bean
+ */
+@Component
+public class RestUserIndexListener {
+
+    private final UserNgramIndex userIndex;
+
+    public RestUserIndexListener(UserNgramIndex userIndex) {
+        this.userIndex = userIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(RestUser user) {
+        // 先把目前的值記下來，commit 後才寫進索引
+        Long id = user.getId();
+        String name = user.getName();
+        String email = user.getEmail();
+        afterCommit(() -> userIndex.put(id, name, email));
+    }
+
+    @PostRemove
+    public void onRemove(RestUser user) {
+        Long id = user.getId();
+        afterCommit(() -> userIndex.remove(id));
+    }
+
+    // 交易 rollback 時索引不應該被改到
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
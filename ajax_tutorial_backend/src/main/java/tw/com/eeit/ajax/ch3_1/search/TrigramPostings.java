@@ -0,0 +1,83 @@
+package tw.com.eeit.ajax.ch3_1.search;
+
+/**
+ * trigram key (long) → IntPostingList 的 hash table (open addressing, linear probing)
+ * 不用 HashMap&lt;Long, ...&gt;：key 不必 boxing，也沒有每個 entry 的 Node 物件
+ * 索引只會新增 trigram (重建時整個 clear)，所以不需要支援刪除
+ * 非 thread-safe，由 UserNgramIndex 的 lock 保護
+ */
+class TrigramPostings {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // values[i] == null 表示空位 (key 可能是 0，不能用 key 判斷)
+    private long[] keys;
+    private IntPostingList[] values;
+    private int size;
+
+    TrigramPostings() {
+        clear();
+    }
+
+    int size() {
+        return size;
+    }
+
+    IntPostingList get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    IntPostingList getOrCreate(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        IntPostingList list = new IntPostingList();
+        keys[i] = key;
+        values[i] = list;
+        // 使用率維持在一半以下，probe 的長度才會很短
+        if (++size > keys.length / 2) {
+            resize();
+        }
+        return list;
+    }
+
+    void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new IntPostingList[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        IntPostingList[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new IntPostingList[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    // trigram key 的低位元是字元，分布不均勻，先打散再取 slot
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,57 @@
+package tw.com.eeit.ajax.ch3_1.search;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
+import tw.com.eeit.ajax.ch3_1.repository.RestUserRepository;
+
+/**
+ * 啟動完成後在背景重建 trigram 索引
+ * 重建完成前的關鍵字查詢會使用原本的 LIKE
+ */
+@Slf4j
+@Component
+public class UserIndexLoader {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private final UserNgramIndex userIndex;
+    private final RestUserRepository userRepository;
+
+    public UserIndexLoader(UserNgramIndex userIndex, RestUserRepository userRepository) {
+        this.userIndex = userIndex;
+        this.userRepository = userRepository;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        try {
+            userIndex.beginRebuild();
+            // 依 id 分批讀取 (keyset)，只讀需要的欄位
+            long lastId = 0;
+            List<RestUserSummary> rows;
+            do {
+                rows = userRepository.findSummariesByIdGreaterThanOrderByIdAsc(lastId, Limit.of(BATCH_SIZE));
+                for (RestUserSummary row : rows) {
+                    userIndex.load(row.id(), row.name(), row.email());
+                    lastId = row.id();
+                }
+            } while (rows.size() == BATCH_SIZE);
+            userIndex.finishRebuild();
+
+            log.info("RestUser trigram 索引重建完成: {} 筆, {} 個 trigram, {} ms", userIndex.documentCount(),
+                    userIndex.termCount(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("RestUser trigram 索引重建失敗，關鍵字查詢維持使用 LIKE", e);
+        }
+    }
+}
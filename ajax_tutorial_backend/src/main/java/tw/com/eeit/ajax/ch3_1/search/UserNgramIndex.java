@@ -0,0 +1,263 @@
+package tw.com.eeit.ajax.ch3_1.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * RestUser name / email 的 trigram 反向索引
+ * LIKE '%kw%' 無法使用 B-tree 索引，只能全表掃描；
+ * 這裡把每個字串拆成連續 3 個字元 (trigram)，記錄「哪些 id 含有這個 trigram」，
+ * 查詢時取 keyword 所有 trigram 的 id 交集，就是可能符合的候選 id
+ *
+ * - 不分大小寫 (候選 id 只會多不會少，最後仍由 DB 的 LIKE 確認)
+ * - 未完成重建、keyword 不足 3 個字、候選太多時回傳 null，呼叫端改用原本的 LIKE 查詢
+ * - 由 RestUserIndexListener 在交易 commit 後即時更新，啟動時由 UserIndexLoader 重建
+ * - 即時更新只新增 trigram、不移除：刪除的 id 記在 live (BitSet) 裡，查詢時濾掉；
+ *   更新前的舊 trigram 留在索引中，只會多出候選 (同樣由 LIKE 確認)，重建時才清掉
+ *   所以不必記住每個 id 被索引的文字
+ */
+@Slf4j
+@Component
+public class UserNgramIndex {
+
+    public enum Field {
+        NAME, EMAIL;
+
+        // 給 Query String 用: name / email
+        public static Field of(String value) {
+            return Field.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int GRAM = 3;
+    // 候選超過這個數量時，IN 查詢不見得比全表掃描快
+    public static final int MAX_CANDIDATES = 1000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // key = (欄位 << 48) | 3 個 UTF-16 字元，各 16 bits
+    private final TrigramPostings postings = new TrigramPostings();
+    // 目前存在的 id (刪除後仍留在 postings 裡的 id 由這裡濾掉)
+    private final BitSet live = new BitSet();
+    private int documentCount;
+
+    // 重建期間被即時更新過的 id，重建時略過 (避免舊資料蓋掉新資料)
+    private BitSet touchedDuringRebuild;
+    private volatile boolean ready;
+    // id 超過 int 範圍就無法使用這個索引
+    private volatile boolean overflow;
+
+    public UserNgramIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("ch3_1.user.index.terms", this, UserNgramIndex::termCount).register(meterRegistry);
+        Gauge.builder("ch3_1.user.index.documents", this, UserNgramIndex::documentCount).register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return ready && !overflow;
+    }
+
+    /**
+     * 查詢候選 id (已排序)
+     * @return 候選 id；null 表示無法使用索引，請改用 LIKE 查詢
+     */
+    public int[] search(Field field, String keyword) {
+        if (!isReady() || keyword == null) {
+            return null;
+        }
+        long[] keys = gramKeys(field, normalize(keyword));
+        if (keys.length == 0) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            IntPostingList[] lists = new IntPostingList[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                lists[i] = postings.get(keys[i]);
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            // 從最短的 list 開始，交集的成本取決於結果大小而不是資料表大小
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+            return intersect(lists, live);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 新增或更新 (加入新文字的 trigram，舊的保留到重建)
+    public void put(Long id, String name, String email) {
+        Integer docId = toDocId(id);
+        if (docId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild != null) {
+                touchedDuringRebuild.set(docId);
+            }
+            index(docId, name, email);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        Integer docId = toDocId(id);
+        if (docId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild != null) {
+                touchedDuringRebuild.set(docId);
+            }
+            if (live.get(docId)) {
+                live.clear(docId);
+                documentCount--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- 重建 (由 UserIndexLoader 呼叫) ---
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            postings.clear();
+            live.clear();
+            documentCount = 0;
+            touchedDuringRebuild = new BitSet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void load(Long id, String name, String email) {
+        Integer docId = toDocId(id);
+        if (docId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!touchedDuringRebuild.get(docId)) {
+                index(docId, name, email);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void finishRebuild() {
+        lock.writeLock().lock();
+        try {
+            touchedDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- 以下皆在 write lock 內呼叫 ---
+
+    private void index(int docId, String name, String email) {
+        String[] texts = { normalize(name), normalize(email) };
+        for (Field field : Field.values()) {
+            for (long key : gramKeys(field, texts[field.ordinal()])) {
+                postings.getOrCreate(key).add(docId);
+            }
+        }
+        if (!live.get(docId)) {
+            live.set(docId);
+            documentCount++;
+        }
+    }
+
+    // --- 工具 ---
+
+    // 交集並濾掉已刪除的 id；lists 需由短到長排序
+    private static int[] intersect(IntPostingList[] lists, BitSet live) {
+        IntPostingList smallest = lists[0];
+        int[] result = new int[Math.min(smallest.size(), MAX_CANDIDATES + 1)];
+        int count = 0;
+        for (int i = 0; i < smallest.size(); i++) {
+            int id = smallest.get(i);
+            boolean inAll = live.get(id);
+            for (int j = 1; j < lists.length && inAll; j++) {
+                inAll = lists[j].contains(id);
+            }
+            if (inAll) {
+                if (count == MAX_CANDIDATES) {
+                    return null; // 候選太多，交給 DB
+                }
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static long[] gramKeys(Field field, String text) {
+        if (text == null || text.length() < GRAM) {
+            return new long[0];
+        }
+        long fieldBits = (long) field.ordinal() << 48;
+        long[] keys = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = fieldBits
+                    | ((long) text.charAt(i) << 32)
+                    | ((long) text.charAt(i + 1) << 16)
+                    | text.charAt(i + 2);
+        }
+        // 同一個 trigram 出現多次只算一次
+        return Arrays.stream(keys).distinct().toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
+    private Integer toDocId(Long id) {
+        if (id == null) {
+            return null;
+        }
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            if (!overflow) {
+                log.warn("RestUser id {} 超過 int 範圍，停用 trigram 索引", id);
+                overflow = true;
+            }
+            return null;
+        }
+        return id.intValue();
+    }
+}
@@ -0,0 +1,116 @@
+package tw.com.eeit.ajax.ch3_1.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import tw.com.eeit.ajax.ch3_1.dto.BatchItemResult;
+import tw.com.eeit.ajax.ch3_1.dto.BatchResult;
+import tw.com.eeit.ajax.ch3_1.model.RestOrder;
+import tw.com.eeit.ajax.ch3_1.model.RestUser;
+import tw.com.eeit.ajax.ch3_1.rollup.OrderRollupService;
+
+/**
+ * 大量新增 (Bulk Insert)
+ * - 主鍵使用 pooled sequence，Hibernate 才能把 INSERT 合併成 JDBC batch
+ * - 每 batch_size 筆 flush + clear 一次，讓 Persistence Context 維持在固定大小
+ */
+@Service
+public class RestBatchService {
+
+    public static final int MAX_ITEMS = 10_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Autowired
+    private OrderRollupService orderRollupService;
+
+    @Autowired
+    private RestUserLookups userLookups;
+
+    @Transactional
+    public BatchResult createUsers(List<RestUser> users) {
+        long start = System.nanoTime();
+        List<BatchItemResult> results = new ArrayList<>(users.size());
+        int pending = 0;
+
+        for (int i = 0; i < users.size(); i++) {
+            RestUser user = users.get(i);
+            if (user == null || user.getName() == null || user.getName().isBlank()) {
+                results.add(BatchItemResult.failed(i, "name 不可為空"));
+                continue;
+            }
+
+            user.setId(null);
+            user.setOrders(null);
+            entityManager.persist(user); // sequence 在 persist 時就配好 id
+            userLookups.invalidate(user.getId()); // 與單筆新增相同：之前查過這個 id 的 404 不能留下來
+            results.add(BatchItemResult.created(i, user.getId()));
+
+            if (++pending % batchSize == 0) {
+                flushAndClear();
+            }
+        }
+        flushAndClear();
+
+        return BatchResult.of(results, System.nanoTime() - start);
+    }
+
+    // 使用者不存在時回傳 null
+    @Transactional
+    public BatchResult createOrdersForUser(Long userId, List<RestOrder> orders) {
+        // 鎖住使用者並讓版本 +1 (整批只算一次變動)
+        RestUser user = entityManager.find(RestUser.class, userId, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        if (user == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        List<BatchItemResult> results = new ArrayList<>(orders.size());
+        List<RestOrder> created = new ArrayList<>(orders.size());
+        int pending = 0;
+
+        for (int i = 0; i < orders.size(); i++) {
+            RestOrder order = orders.get(i);
+            if (order == null || order.getTotalAmount() == null) {
+                results.add(BatchItemResult.failed(i, "totalAmount 不可為空"));
+                continue;
+            }
+
+            order.setId(null);
+            order.setUser(user);
+            order.setStatus("CREATED");
+            entityManager.persist(order);
+            results.add(BatchItemResult.created(i, order.getId()));
+            created.add(order);
+
+            if (++pending % batchSize == 0) {
+                flushAndClear();
+                // clear 之後 user 已經 detached，之後只需要外鍵，用 reference (proxy) 即可
+                user = entityManager.getReference(RestUser.class, userId);
+            }
+        }
+        // 整批只更新一次彙總
+        orderRollupService.recordCreated(userId, created);
+        userLookups.invalidate(userId);
+        flushAndClear();
+
+        return BatchResult.of(results, System.nanoTime() - start);
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
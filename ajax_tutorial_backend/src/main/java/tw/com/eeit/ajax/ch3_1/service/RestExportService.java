@@ -0,0 +1,51 @@
+package tw.com.eeit.ajax.ch3_1.service;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import tw.com.eeit.ajax.ch3_1.dto.RestOrderSummary;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
+import tw.com.eeit.ajax.ch3_1.repository.RestOrderRepository;
+import tw.com.eeit.ajax.ch3_1.repository.RestUserRepository;
+import tw.com.eeit.ajax.common.web.RecordStreamWriter;
+
+/**
+ * 匯出全部使用者 / 訂單 (邊讀邊寫，記憶體用量與資料筆數無關)
+ * - Repository 回傳 Stream，JDBC 每次只抓 fetch size 筆，不會一次載入整張表
+ * - 使用者與訂單都直接查投影 (只有匯出的欄位)，不會進入 Persistence Context
+ * - 寫出失敗 (Client 斷線) 時 IOException 直接往外丟，Stream 關閉、交易結束
+ */
+@Service
+public class RestExportService {
+
+    @Autowired
+    private RestUserRepository userRepository;
+
+    @Autowired
+    private RestOrderRepository orderRepository;
+
+    @Transactional(readOnly = true)
+    public void exportUsers(RecordStreamWriter writer) throws IOException {
+        try (Stream<RestUserSummary> users = userRepository.streamSummariesByOrderByIdAsc()) {
+            Iterator<RestUserSummary> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportOrders(RecordStreamWriter writer) throws IOException {
+        try (Stream<RestOrderSummary> orders = orderRepository.streamSummariesBy()) {
+            Iterator<RestOrderSummary> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+    }
+}
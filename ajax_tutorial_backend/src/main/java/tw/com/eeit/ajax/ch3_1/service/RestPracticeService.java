@@ -1,75 +1,349 @@
 package tw.com.eeit.ajax.ch3_1.service;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+import tw.com.eeit.ajax.ch3_1.dto.CursorPage;
+import tw.com.eeit.ajax.ch3_1.dto.OrderRollupSummary;
+import tw.com.eeit.ajax.ch3_1.dto.RestOrderSummary;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserSummary;
+import tw.com.eeit.ajax.ch3_1.dto.RestUserWithOrders;
+import tw.com.eeit.ajax.ch3_1.dto.UserCursor;
+import tw.com.eeit.ajax.ch3_1.dto.UserSpending;
 import tw.com.eeit.ajax.ch3_1.model.RestOrder;
 import tw.com.eeit.ajax.ch3_1.model.RestUser;
 import tw.com.eeit.ajax.ch3_1.repository.RestOrderRepository;
 import tw.com.eeit.ajax.ch3_1.repository.RestUserRepository;
+import tw.com.eeit.ajax.ch3_1.rollup.OrderRollupService;
+import tw.com.eeit.ajax.ch3_1.search.UserNgramIndex;
+import tw.com.eeit.ajax.ch3_1.search.UserNgramIndex.Field;
+import tw.com.eeit.ajax.common.web.ETags;
 
 @Service
 public class RestPracticeService {
 
+    public static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
+    // 沒帶 If-Match 的 PATCH 與其他修改衝突時，最多重新套用幾次
+    private static final int MAX_PATCH_ATTEMPTS = 3;
+
     @Autowired
     private RestUserRepository userRepository;
 
     @Autowired
     private RestOrderRepository orderRepository;
 
+    @Autowired
+    private UserNgramIndex userIndex;
+
+    @Autowired
+    private OrderRollupService orderRollupService;
+
+    @Autowired
+    private RestUserLookups userLookups;
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate transaction;
+
+    public RestPracticeService(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
     // --- User Logic ---
 
-    public List<RestUser> getAllUsers(String keyword) {
-        if (keyword != null && !keyword.isEmpty()) {
-            return userRepository.findByNameContaining(keyword);
+    // 列表一律回傳投影，不載入 orders
+    // 關鍵字先查 trigram 索引取得候選 id，索引無法使用時才退回 LIKE 全表掃描
+    // 唯讀交易走唯讀副本 (見 ReadWriteRoutingDataSource)，以下的讀取方法相同
+    @Transactional(readOnly = true)
+    public List<RestUserSummary> getAllUsers(String keyword, Field field) {
+        if (keyword == null || keyword.isEmpty()) {
+            return userRepository.findSummariesBy();
+        }
+
+        int[] candidates = userIndex.search(field, keyword);
+        if (candidates == null) {
+            return field == Field.EMAIL
+                    ? userRepository.findSummariesByEmailContaining(keyword)
+                    : userRepository.findSummariesByNameContaining(keyword);
         }
-        return userRepository.findAll();
+        if (candidates.length == 0) {
+            return List.of();
+        }
+        List<Long> ids = toIds(candidates);
+        return field == Field.EMAIL
+                ? userRepository.findSummariesByIdInAndEmailContaining(ids, keyword)
+                : userRepository.findSummariesByIdInAndNameContaining(ids, keyword);
     }
-    
-    public Page<RestUser> getUsersWithPaging(String keyword, Pageable pageable) {
-        if (keyword != null && !keyword.isEmpty()) {
-            return userRepository.findByNameContaining(keyword, pageable);
+
+    @Transactional(readOnly = true)
+    public Page<RestUserSummary> getUsersWithPaging(String keyword, Field field, Pageable pageable) {
+        if (keyword == null || keyword.isEmpty()) {
+            return userRepository.findSummariesBy(pageable);
+        }
+
+        int[] candidates = userIndex.search(field, keyword);
+        if (candidates == null) {
+            return field == Field.EMAIL
+                    ? userRepository.findSummariesByEmailContaining(keyword, pageable)
+                    : userRepository.findSummariesByNameContaining(keyword, pageable);
         }
-    	return userRepository.findAll(pageable);
+        if (candidates.length == 0) {
+            return Page.empty(pageable);
+        }
+        List<Long> ids = toIds(candidates);
+        return field == Field.EMAIL
+                ? userRepository.findSummariesByIdInAndEmailContaining(ids, keyword, pageable)
+                : userRepository.findSummariesByIdInAndNameContaining(ids, keyword, pageable);
+    }
+
+    private List<Long> toIds(int[] candidates) {
+        return Arrays.stream(candidates).mapToObj(Long::valueOf).toList();
     }
 
+    // 使用者 + 訂單：1 次分頁查詢 (+ count) 與 1 次 IN 查詢，與頁面大小無關
+    @Transactional(readOnly = true)
+    public Page<RestUserWithOrders> getUsersWithOrders(Pageable pageable) {
+        Page<RestUserSummary> users = userRepository.findSummariesBy(pageable);
+        if (users.isEmpty()) {
+            return users.map(user -> RestUserWithOrders.of(user, List.of()));
+        }
+
+        List<Long> userIds = users.map(RestUserSummary::id).getContent();
+        Map<Long, List<RestOrderSummary>> ordersByUser = orderRepository.findSummariesByUserIdIn(userIds).stream()
+                .collect(Collectors.groupingBy(RestOrderSummary::userId));
+
+        return users.map(user -> RestUserWithOrders.of(user, ordersByUser.getOrDefault(user.id(), List.of())));
+    }
+
+    // Keyset 分頁：多取一筆用來判斷是否還有下一頁，不執行 count
+    @Transactional(readOnly = true)
+    public CursorPage<RestUserSummary> getUsersAfterCursor(String keyword, String sort, UserCursor after, int size) {
+        List<RestUserSummary> rows = userRepository.findAfter(keyword, sort, after, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<RestUserSummary> content = hasNext ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            RestUserSummary last = content.get(content.size() - 1);
+            nextCursor = new UserCursor(sort, sortValueOf(last, sort), last.id()).encode();
+        }
+        return new CursorPage<>(content, content.size(), hasNext, nextCursor);
+    }
+
+    private String sortValueOf(RestUserSummary user, String sort) {
+        return switch (sort) {
+            case "name" -> user.name();
+            case "email" -> user.email();
+            default -> String.valueOf(user.id());
+        };
+    }
+
+    // 使用者與 orders 都先從二級快取取得 (Entity 快取 + Collection 快取)，都命中時不發任何 SQL
+    // orders 在交易內初始化，回傳後序列化不會再查 DB
+    // 同一位使用者的並行請求共用一次載入；交易在合併之後才開始，等待中的請求不佔用 DB 連線
     public RestUser getUserById(Long id) {
-        return userRepository.findById(id).orElse(null);
+        return userLookups.user(id, () -> readOnlyTransaction.execute(status ->
+                userRepository.findById(id).map(user -> {
+                    Hibernate.initialize(user.getOrders());
+                    return user;
+                }).orElse(null)));
+    }
+
+    // --- ETag (使用者的版本號；新增訂單也會讓版本 +1，所以同時代表 orders 的變動) ---
+
+    // 使用者不存在時回傳 null
+    // 版本號從二級快取的 RestUser 取得，命中時不查 DB
+    public String getUserETag(Long id) {
+        return userRepository.findById(id).map(this::getUserETag).orElse(null);
+    }
+
+    public String getUserETag(RestUser user) {
+        return userETag(user.getId(), user.getVersion());
+    }
+
+    // 使用者不存在時回傳 null
+    public String getOrdersETag(Long userId) {
+        return userRepository.findById(userId).map(user -> ETags.of("orders", userId, user.getVersion())).orElse(null);
+    }
+
+    private String userETag(Long id, Long version) {
+        return ETags.of("user", id, version);
+    }
+
+    // 從二級快取確認，命中時不查 DB
+    public boolean userExists(Long id) {
+        return userRepository.findById(id).isPresent();
     }
 
     public RestUser createUser(RestUser user) {
-        return userRepository.save(user);
+        RestUser saved = userRepository.save(user);
+        userLookups.invalidate(saved.getId()); // 重用結果時，之前查過這個 id 的 404 不能留下來
+        return saved;
     }
 
-    public RestUser updateUser(Long id, RestUser updatedUser) {
+    /**
+     * ifMatch 為 null 時不檢查版本
+     * 版本不符丟出 412；檢查之後才被別人改掉的情況，commit 時由 @Version 擋下 (ObjectOptimisticLockingFailureException)
+     */
+    @Transactional
+    public RestUser updateUser(Long id, RestUser updatedUser, String ifMatch) {
         return userRepository.findById(id).map(user -> {
+            checkIfMatch(ifMatch, getUserETag(user));
             user.setName(updatedUser.getName());
             user.setEmail(updatedUser.getEmail());
             user.setActive(updatedUser.getActive());
-            // 這裡不做部分更新 (PATCH)，而是整筆替換 (PUT) 語意
-            return userRepository.save(user);
+            // 整筆替換 (PUT) 語意，部分更新見 patchUser
+            userLookups.invalidate(id);
+            return saveAndInitialize(user);
+        }).orElse(null);
+    }
+
+    /**
+     * JSON Merge Patch：只改 patch 裡出現的欄位，null 表示清除，其他欄位 (id、version、orders) 忽略
+     * 值沒有真的改變時不會發出 UPDATE，version 與 ETag 也不變
+     *
+     * 不鎖資料列，靠 @Version 偵測並行修改 (UPDATE ... WHERE version = ?)：
+     * - 帶 If-Match：client 是根據那個版本決定要改什麼，衝突時回 412 (由 Controller 處理)
+     * - 沒帶 If-Match：patch 只描述要改的欄位，在最新的資料上重新套用即可，不會蓋掉別人改的其他欄位
+     */
+    public RestUser patchUser(Long id, JsonNode patch, String ifMatch) {
+        if (patch == null || !patch.isObject()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Merge Patch 必須是 JSON 物件");
+        }
+        for (int attempt = 1;; attempt++) {
+            try {
+                return transaction.execute(status -> applyPatch(id, patch, ifMatch));
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (ifMatch != null) {
+                    throw e;
+                }
+                if (attempt >= MAX_PATCH_ATTEMPTS) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "資料正被其他人修改，請稍後再試");
+                }
+            }
+        }
+    }
+
+    private RestUser applyPatch(Long id, JsonNode patch, String ifMatch) {
+        return userRepository.findById(id).map(user -> {
+            checkIfMatch(ifMatch, getUserETag(user));
+            if (patch.has("name")) {
+                user.setName(textValue(patch, "name"));
+            }
+            if (patch.has("email")) {
+                user.setEmail(textValue(patch, "email"));
+            }
+            if (patch.has("active")) {
+                user.setActive(booleanValue(patch, "active"));
+            }
+            userLookups.invalidate(id);
+            return saveAndInitialize(user);
         }).orElse(null);
     }
 
-    public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+    // flush 後 version 才是新的值
+    // 已關閉 open-in-view，orders 要在交易內初始化，回傳後序列化才不會 LazyInitializationException
+    private RestUser saveAndInitialize(RestUser user) {
+        RestUser saved = userRepository.saveAndFlush(user);
+        Hibernate.initialize(saved.getOrders());
+        return saved;
+    }
+
+    private static String textValue(JsonNode patch, String field) {
+        JsonNode value = patch.get(field);
+        if (value.isNull()) {
+            return null;
+        }
+        if (!value.isTextual()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " 必須是字串或 null");
+        }
+        return value.textValue();
+    }
+
+    private static Boolean booleanValue(JsonNode patch, String field) {
+        JsonNode value = patch.get(field);
+        if (value.isNull()) {
+            return null;
+        }
+        if (!value.isBoolean()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, field + " 必須是 true、false 或 null");
+        }
+        return value.booleanValue();
+    }
+
+    // 訂單由 cascade 一起刪除，訂單彙總也一併刪除
+    @Transactional
+    public void deleteUser(Long id, String ifMatch) {
+        if (ifMatch == null) {
+            orderRollupService.removeUser(id);
+            userLookups.invalidate(id);
+            userRepository.deleteById(id);
+            return;
+        }
+        RestUser user = userRepository.findById(id).orElse(null);
+        checkIfMatch(ifMatch, user != null ? getUserETag(user) : null);
+        orderRollupService.removeUser(id);
+        userLookups.invalidate(id);
+        userRepository.delete(user);
+    }
+
+    private void checkIfMatch(String ifMatch, String currentETag) {
+        if (!ETags.matches(ifMatch, currentETag)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "資料已被修改，請重新取得");
+        }
     }
 
     // --- Order Logic (Nesting) ---
 
+    // 與 getUserById 相同，交易在合併之後才開始
+    // 查詢快取的結果只能來自主資料庫 (副本落後時會把舊的訂單 id 放進快取，見 ReplicaCacheModeJpaDialect)，
+    // 所以不用唯讀交易；沒有執行寫入，不會讓 client 之後的讀取都走主資料庫
     public List<RestOrder> getOrdersByUserId(Long userId) {
-        return orderRepository.findByUserId(userId);
+        return userLookups.orders(userId,
+                () -> transaction.execute(status -> orderRepository.findByUserId(userId)));
     }
 
+    // 鎖住使用者並讓版本 +1，使用者與訂單列表的 ETag 都會改變
+    // 訂單彙總在同一個交易內累加
+    @Transactional
     public RestOrder createOrderForUser(Long userId, RestOrder order) {
-        return userRepository.findById(userId).map(user -> {
+        return userRepository.findForUpdateById(userId).map(user -> {
             order.setUser(user); // 關聯起來
             order.setStatus("CREATED");
-            return orderRepository.save(order);
+            RestOrder saved = orderRepository.save(order);
+            orderRollupService.recordCreated(saved);
+            userLookups.invalidate(userId);
+            return saved;
         }).orElse(null);
     }
+
+    // 使用者不存在時回傳 null
+    public OrderRollupSummary getOrderSummary(Long userId) {
+        if (!userExists(userId)) {
+            return null;
+        }
+        return orderRollupService.getSummary(userId);
+    }
+
+    public List<UserSpending> getTopSpenders(int limit) {
+        return orderRollupService.getTopSpenders(limit);
+    }
 }
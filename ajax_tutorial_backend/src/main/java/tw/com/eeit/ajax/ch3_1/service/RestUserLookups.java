@@ -0,0 +1,106 @@
+package tw.com.eeit.ajax.ch3_1.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import tw.com.eeit.ajax.ch3_1.model.RestOrder;
+import tw.com.eeit.ajax.ch3_1.model.RestUser;
+import tw.com.eeit.ajax.common.concurrent.SingleFlight;
+
+/**
+ * GET /users/{id} 與 GET /users/{id}/orders 的讀取合併
+ * 同一位使用者同時湧入的請求共用一次載入 (見 SingleFlight)
+ *
+ * 會改變使用者或訂單的交易 (修改、刪除、新增訂單的每一條路徑) 都要呼叫 invalidate，
+ * commit 之後才移除，避免 commit 前開始的載入把舊資料留下來
+ *
+ * 同時讓二級快取裡的 RestUser 失效：新增訂單時以 PESSIMISTIC_FORCE_INCREMENT 讓版本 +1，
+ * 這只會改 DB 的 version，不會更新二級快取，不處理的話 ETag 會停在舊版本 (該回 200 的請求回了 304)
+ * 做法與 Hibernate 更新 READ_WRITE Entity 相同：交易內先上 soft lock，交易結束後解除；
+ * 上鎖期間讀取一律查 DB，解除前就開始的載入 (可能讀到舊版本) 不能再放回快取
+ * (只在 commit 後 evict 的話，commit 前開始的載入會在 evict 之後把舊版本放回去)
+ */
+@Component
+public class RestUserLookups {
+
+    private final SingleFlight<Long, RestUser> users;
+    private final SingleFlight<Long, List<RestOrder>> orders;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public RestUserLookups(MeterRegistry meterRegistry, EntityManagerFactory entityManagerFactory,
+            @Value("${app.single-flight.result-ttl:0ms}") Duration resultTtl) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.users = new SingleFlight<>("ch3_1.user", resultTtl, meterRegistry);
+        this.orders = new SingleFlight<>("ch3_1.user.orders", resultTtl, meterRegistry);
+    }
+
+    public RestUser user(Long id, Supplier<RestUser> loader) {
+        return users.load(id, loader);
+    }
+
+    public List<RestOrder> orders(Long userId, Supplier<List<RestOrder>> loader) {
+        return orders.load(userId, loader);
+    }
+
+    public void invalidate(Long userId) {
+        lockCachedUser(userId);
+        afterCommit(() -> {
+            users.invalidate(userId);
+            orders.invalidate(userId);
+        });
+    }
+
+    private void lockCachedUser(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            entityManagerFactory.getCache().evict(RestUser.class, userId);
+            return;
+        }
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        SessionFactoryImplementor factory = session.getFactory();
+        EntityPersister persister = factory.getMappingMetamodel().getEntityDescriptor(RestUser.class);
+        EntityDataAccess cache = persister.getCacheAccessStrategy();
+        if (cache == null) {
+            return;
+        }
+        Object key = cache.generateCacheKey(userId, persister, factory, session.getTenantIdentifier());
+        SoftLock lock = cache.lockItem(session, key, null);
+        // rollback 也要解除，否則要等 soft lock 逾時才能再快取
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                cache.unlockItem(session, key, lock);
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,8 +1,13 @@
 package tw.com.eeit.ajax.ch4;
 
 import lombok.Data;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import tw.com.eeit.ajax.ch4.service.AuthTokenService;
+import tw.com.eeit.ajax.ch4.service.AuthTokenService.TokenPair;
 import tw.com.eeit.ajax.ch4.utils.JwtUtil;
+import tw.com.eeit.ajax.ch4.utils.VerifiedToken;
 
 import java.util.Map;
 
@@ -11,25 +16,70 @@ import java.util.Map;
 public class Ch4AuthController {
 
     private final JwtUtil jwtUtil;
+    private final AuthTokenService authTokenService;
 
-    public Ch4AuthController(JwtUtil jwtUtil) {
+    public Ch4AuthController(JwtUtil jwtUtil, AuthTokenService authTokenService) {
         this.jwtUtil = jwtUtil;
+        this.authTokenService = authTokenService;
     }
 
+    // token 為 Access Token (幾分鐘後過期)，過期前用 refreshToken 呼叫 /ch4/refresh 換新的
     @PostMapping("/login")
-    public Map<String, String> login(@RequestBody LoginRequest request) {
+    public Map<String, Object> login(@RequestBody LoginRequest request) {
         // 模擬驗證：只要帳號是 admin 密碼是 1234 就通過
         if ("admin".equals(request.getUsername()) && "1234".equals(request.getPassword())) {
-            String token = jwtUtil.generateToken(request.getUsername());
-            return Map.of("token", token);
+            return toResponse(authTokenService.login(request.getUsername()));
         } else {
             throw new RuntimeException("Login Failed");
         }
     }
 
+    // 每個 Refresh Token 只能用一次，回應中會有新的 refreshToken
+    @PostMapping("/refresh")
+    public Map<String, Object> refresh(@RequestBody RefreshRequest request) {
+        return toResponse(authTokenService.refresh(request.getRefreshToken()));
+    }
+
+    // 撤銷目前的 Access Token (Authorization Header) 與整次登入的 Refresh Token
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authHeader,
+            @RequestBody(required = false) RefreshRequest request) {
+        VerifiedToken accessToken = null;
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                accessToken = jwtUtil.validateToken(authHeader.substring(7));
+            } catch (Exception e) {
+                // 已過期或無效的 Access Token 不必撤銷
+            }
+        }
+        authTokenService.logout(accessToken, request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.noContent().build();
+    }
+
+    private Map<String, Object> toResponse(TokenPair tokens) {
+        return Map.of(
+                "token", tokens.accessToken(),
+                "refreshToken", tokens.refreshToken(),
+                "expiresIn", tokens.expiresInSeconds());
+    }
+
+    // Token 驗證快取的命中統計
+    @GetMapping("/token-cache/stats")
+    public Map<String, Long> tokenCacheStats() {
+        return Map.of(
+                "hits", jwtUtil.getCacheHits(),
+                "misses", jwtUtil.getCacheMisses(),
+                "size", (long) jwtUtil.getCacheSize());
+    }
+
     @Data
     public static class LoginRequest {
         private String username;
         private String password;
     }
+
+    @Data
+    public static class RefreshRequest {
+        private String refreshToken;
+    }
 }
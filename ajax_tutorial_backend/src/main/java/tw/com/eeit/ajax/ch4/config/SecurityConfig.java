@@ -1,25 +1,64 @@
 package tw.com.eeit.ajax.ch4.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import tw.com.eeit.ajax.ch4.filter.JwtAuthenticationFilter;
+import tw.com.eeit.ajax.ch4.filter.RateLimitFilter;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
 
-    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(JwtAuthenticationFilter jwtAuthenticationFilter, RateLimitFilter rateLimitFilter) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
+    /**
+     * Prometheus 抓取專用: HTTP Basic + METRICS 角色
+     * Scraper 無法先呼叫 /ch4/login 換 Access Token (15 分鐘就過期)，所以另外給一組固定帳密
+     * 帳密只在這條 chain 有效，不能用來呼叫其他 API
+     */
     @Bean
+    @Order(1)
+    public SecurityFilterChain metricsScrapeFilterChain(HttpSecurity http,
+            @Value("${app.metrics.scrape.username:prometheus}") String username,
+            @Value("${app.metrics.scrape.password}") String password) throws Exception {
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(
+                PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        provider.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.withUsername(username).password(password).roles("METRICS").build()));
+
+        http
+            .securityMatcher("/actuator/prometheus")
+            .csrf(csrf -> csrf.disable())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .authorizeHttpRequests(auth -> auth.anyRequest().hasRole("METRICS"))
+            .authenticationManager(new ProviderManager(provider))
+            .httpBasic(basic -> {});
+
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
             .csrf(csrf -> csrf.disable()) // 前後端分離通常關閉 CSRF
@@ -27,9 +66,15 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/ch1/**", "/ch2/**", "/ch3/**").permitAll() // 開放前三章練習
                 .requestMatchers("/ch4/login").permitAll() // 開放登入這支 API
+                .requestMatchers("/ch4/refresh", "/ch4/logout").permitAll() // 以 Refresh Token 驗證 (Access Token 可能已過期)
+                .requestMatchers("/js/**").permitAll() // 靜態檔 (public 快取)
+                .requestMatchers("/actuator/health").permitAll() // 健康檢查 (metrics 會透露內部狀態，仍需登入；prometheus 見上面的 chain)
+                .requestMatchers(HttpMethod.POST, "/api/ch3_1/order-rollups:rebuild").hasRole("ADMIN") // 重建會鎖住所有使用者，只給管理者
+                .requestMatchers("/error").permitAll() // 讓 4xx/5xx 的錯誤頁能正常回傳原本的 Status Code
                 .anyRequest().authenticated() // 其他都要登入 (包含 ch5)
             )
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            .addFilterBefore(rateLimitFilter, JwtAuthenticationFilter.class); // 超過額度直接 429，不必驗 Token
 
         return http.build();
     }
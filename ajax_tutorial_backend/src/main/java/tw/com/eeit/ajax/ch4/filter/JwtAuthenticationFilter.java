@@ -4,24 +4,31 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import tw.com.eeit.ajax.ch4.utils.JwtUtil;
+import tw.com.eeit.ajax.ch4.utils.TokenRevocationList;
+import tw.com.eeit.ajax.ch4.utils.VerifiedToken;
 
 import java.io.IOException;
 import java.util.List;
 
+@Slf4j
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
+    private final TokenRevocationList revocationList;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, TokenRevocationList revocationList) {
         this.jwtUtil = jwtUtil;
+        this.revocationList = revocationList;
     }
 
     @Override
@@ -34,12 +41,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7); // 去掉 "Bearer "
             try {
-                // 2. 驗證 Token
-                String username = jwtUtil.validateTokenAndGetUsername(token);
+                // 2. 驗證 Token，並確認沒有被撤銷 (登出、Refresh Token 被重複使用)
+                VerifiedToken verified = jwtUtil.validateToken(token);
+                if (revocationList.isRevoked(verified.jti())) {
+                    log.debug("Token 已撤銷: {}", verified.jti());
+                    filterChain.doFilter(request, response);
+                    return;
+                }
+                String username = verified.username();
 
                 // 3. 告訴 Spring Security 這個人是誰
                 // 為了簡化，這裡直接建立一個 UserDetails，實際專案應從 DB 讀取
-                UserDetails userDetails = new User(username, "", List.of());
+                // 角色也是模擬的：admin 帳號有 ADMIN 角色 (維運用的 API 需要，見 SecurityConfig)
+                UserDetails userDetails = new User(username, "", "admin".equals(username)
+                        ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))
+                        : List.of());
                 
                 UsernamePasswordAuthenticationToken authentication =
                     new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
@@ -48,7 +64,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
             } catch (Exception e) {
                 // Token 無效
-                System.out.println("Token 無效: " + e.getMessage());
+                log.debug("Token 無效: {}", e.getMessage());
             }
         }
 
@@ -0,0 +1,146 @@
+package tw.com.eeit.ajax.ch4.filter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch4.utils.JwtUtil;
+import tw.com.eeit.ajax.ch4.utils.TokenBucketLimiter;
+
+/**
+ * 每個 client 的請求速率限制 (放在 JwtAuthenticationFilter 之前)
+ * 超過的請求直接回 429 + Retry-After，不會進到後面的驗證與 Controller
+ *
+ * 路由分組，各自一份額度 (見 application.properties 的 app.rate-limit.*)
+ * - login : /ch4/login，以 IP 計算 (擋暴力嘗試密碼)
+ * - api   : /api/**，有合法 Token 時以使用者 (JWT subject) 計算，否則以 IP 計算
+ * - upload: /ch5/**，同 api
+ * 其他路徑不限制
+ *
+ * Token 驗證結果有快取 (見 JwtUtil)，這裡先驗一次不會讓 JwtAuthenticationFilter 多花時間；
+ * 沒驗過的 subject 不能當 key，否則換個 subject 就能拿到新的額度
+ */
+@Slf4j
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private enum Group {
+        LOGIN, API, UPLOAD
+    }
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final JwtUtil jwtUtil;
+    private final boolean enabled;
+    private final Limit[] limits = new Limit[Group.values().length];
+
+    public RateLimitFilter(JwtUtil jwtUtil, MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.enabled:true}") boolean enabled,
+            @Value("${app.rate-limit.max-clients:100000}") int maxClients,
+            @Value("${app.rate-limit.login.capacity:10}") int loginCapacity,
+            @Value("${app.rate-limit.login.period:1m}") Duration loginPeriod,
+            @Value("${app.rate-limit.api.capacity:1000}") int apiCapacity,
+            @Value("${app.rate-limit.api.period:1s}") Duration apiPeriod,
+            @Value("${app.rate-limit.upload.capacity:100}") int uploadCapacity,
+            @Value("${app.rate-limit.upload.period:1s}") Duration uploadPeriod) {
+        this.jwtUtil = jwtUtil;
+        this.enabled = enabled;
+        limits[Group.LOGIN.ordinal()] = new Limit(Group.LOGIN,
+                new TokenBucketLimiter(loginCapacity, loginPeriod, maxClients), meterRegistry);
+        limits[Group.API.ordinal()] = new Limit(Group.API,
+                new TokenBucketLimiter(apiCapacity, apiPeriod, maxClients), meterRegistry);
+        limits[Group.UPLOAD.ordinal()] = new Limit(Group.UPLOAD,
+                new TokenBucketLimiter(uploadCapacity, uploadPeriod, maxClients), meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || groupOf(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Group group = groupOf(request);
+        Limit limit = limits[group.ordinal()];
+        String client = group == Group.LOGIN ? ipKey(request) : clientKey(request);
+
+        long waitNanos = limit.limiter.tryAcquire(client);
+        if (waitNanos > 0) {
+            limit.rejected.increment();
+            // 無條件進位到秒
+            long retryAfter = (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            return;
+        }
+        limit.allowed.increment();
+        filterChain.doFilter(request, response);
+    }
+
+    private static Group groupOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/ch4/login")) {
+            return Group.LOGIN;
+        }
+        if (path.startsWith("/api/")) {
+            return Group.API;
+        }
+        if (path.startsWith("/ch5/")) {
+            return Group.UPLOAD;
+        }
+        return null;
+    }
+
+    // 有合法 Token 時以使用者計算 (同一個人換 IP 也共用額度)
+    private String clientKey(HttpServletRequest request) {
+        String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                return "sub:" + jwtUtil.validateTokenAndGetUsername(authHeader.substring(7));
+            } catch (Exception e) {
+                // Token 無效：以 IP 計算，之後由 JwtAuthenticationFilter / Spring Security 回 401
+                log.debug("Token 無效，改以 IP 限流: {}", e.getMessage());
+            }
+        }
+        return ipKey(request);
+    }
+
+    // 在反向代理後面時需設定 server.forward-headers-strategy，getRemoteAddr 才會是真正的 client IP
+    private static String ipKey(HttpServletRequest request) {
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static class Limit {
+        final TokenBucketLimiter limiter;
+        final Counter allowed;
+        final Counter rejected;
+
+        Limit(Group group, TokenBucketLimiter limiter, MeterRegistry meterRegistry) {
+            String name = group.name().toLowerCase(Locale.ROOT);
+            this.limiter = limiter;
+            this.allowed = Counter.builder("ratelimit.requests").tag("group", name).tag("result", "allowed")
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("ratelimit.requests").tag("group", name).tag("result", "rejected")
+                    .register(meterRegistry);
+            Gauge.builder("ratelimit.clients", limiter, TokenBucketLimiter::size).tag("group", name)
+                    .register(meterRegistry);
+        }
+    }
+}
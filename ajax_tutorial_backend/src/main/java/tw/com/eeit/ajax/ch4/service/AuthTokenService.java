@@ -0,0 +1,148 @@
+package tw.com.eeit.ajax.ch4.service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch4.utils.JwtUtil;
+import tw.com.eeit.ajax.ch4.utils.JwtUtil.IssuedToken;
+import tw.com.eeit.ajax.ch4.utils.TokenRevocationList;
+import tw.com.eeit.ajax.ch4.utils.VerifiedToken;
+import tw.com.eeit.ajax.ch4.utils.VerifiedTokenCache;
+
+/**
+ * Access Token + Refresh Token
+ * - Access Token (JWT) 只活幾分鐘，驗證不查任何狀態；撤銷的 jti 由 TokenRevocationList 擋下
+ * - Refresh Token 是隨機字串，只存在伺服器端 (以 SHA-256 摘要為 key)，每次使用都換一個新的 (rotation)
+ * - 同一次登入換出來的 Refresh Token 屬於同一個 family；
+ *   已經用過的 Refresh Token 又被拿來用，表示可能被偷了，整個 family 與它目前的 Access Token 一起撤銷
+ */
+@Slf4j
+@Service
+public class AuthTokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long PURGE_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationList revocationList;
+    private final long refreshTokenTtlMillis;
+
+    private final Map<String, RefreshToken> refreshTokens = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurge = new AtomicLong();
+
+    public AuthTokenService(JwtUtil jwtUtil, TokenRevocationList revocationList,
+            @Value("${app.jwt.refresh-token-ttl:7d}") Duration refreshTokenTtl) {
+        this.jwtUtil = jwtUtil;
+        this.revocationList = revocationList;
+        this.refreshTokenTtlMillis = refreshTokenTtl.toMillis();
+    }
+
+    public TokenPair login(String username) {
+        return issue(new Family(username));
+    }
+
+    // 找不到、過期、已撤銷或重複使用時回 401
+    public TokenPair refresh(String refreshToken) {
+        RefreshToken current = refreshToken != null ? refreshTokens.get(VerifiedTokenCache.keyOf(refreshToken)) : null;
+        if (current == null || current.isExpired(System.currentTimeMillis()) || current.family.revoked) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 無效");
+        }
+        // 同一個 Refresh Token 只能換一次 (兩個請求同時來也只有一個會成功)
+        if (!current.used.compareAndSet(false, true)) {
+            log.warn("Refresh Token 重複使用，撤銷使用者 {} 的這次登入", current.family.username);
+            revoke(current.family);
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 已使用過");
+        }
+        return issue(current.family);
+    }
+
+    // 撤銷 Access Token 與 Refresh Token 所屬的整次登入 (兩者都可以是 null)
+    public void logout(VerifiedToken accessToken, String refreshToken) {
+        if (accessToken != null) {
+            revocationList.revoke(accessToken.jti(), accessToken.expiresAtMillis());
+        }
+        if (refreshToken != null) {
+            RefreshToken current = refreshTokens.get(VerifiedTokenCache.keyOf(refreshToken));
+            if (current != null) {
+                revoke(current.family);
+            }
+        }
+    }
+
+    private TokenPair issue(Family family) {
+        purgeExpiredIfDue();
+        IssuedToken access = jwtUtil.issueToken(family.username);
+        family.access = access.claims();
+
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokens.put(VerifiedTokenCache.keyOf(refreshToken),
+                new RefreshToken(family, System.currentTimeMillis() + refreshTokenTtlMillis));
+
+        // 與 revoke 同時發生時，剛發出的 Access Token 也要撤銷
+        if (family.revoked) {
+            revocationList.revoke(access.claims().jti(), access.claims().expiresAtMillis());
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh Token 無效");
+        }
+        return new TokenPair(access.token(), refreshToken, jwtUtil.getExpirationSeconds());
+    }
+
+    private void revoke(Family family) {
+        family.revoked = true;
+        VerifiedToken access = family.access;
+        if (access != null) {
+            revocationList.revoke(access.jti(), access.expiresAtMillis());
+        }
+    }
+
+    // 用過的 Refresh Token 留到過期為止 (才能發現重複使用)，過期後才移除
+    private void purgeExpiredIfDue() {
+        long now = System.currentTimeMillis();
+        long next = nextPurge.get();
+        if (now >= next && nextPurge.compareAndSet(next, now + PURGE_INTERVAL_MILLIS)) {
+            refreshTokens.values().removeIf(token -> token.isExpired(now));
+        }
+    }
+
+    public record TokenPair(String accessToken, String refreshToken, long expiresInSeconds) {
+    }
+
+    // 同一次登入 (login 之後的每一次 refresh 都屬於同一個 family)
+    private static class Family {
+        final String username;
+        volatile boolean revoked;
+        // 目前有效的 Access Token，撤銷 family 時一起撤銷
+        volatile VerifiedToken access;
+
+        Family(String username) {
+            this.username = username;
+        }
+    }
+
+    private static class RefreshToken {
+        final Family family;
+        final long expiresAtMillis;
+        final AtomicBoolean used = new AtomicBoolean();
+
+        RefreshToken(Family family, long expiresAtMillis) {
+            this.family = family;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+}
@@ -1,41 +1,143 @@
 package tw.com.eeit.ajax.ch4.utils;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
     // 密鑰 (真實專案請放在配置文件並加密)
     // Key length must be at least 256 bits for HS256
     private final String SECRET_KEY = "mySuperSecretKeyDoNotShareWithAnyoneMustBeLongEnough";
-    private final long EXPIRATION_TIME = 86400000; // 1天 (毫秒)
+    // Access Token 只活很短，過期後用 Refresh Token 換新的 (見 AuthTokenService)
+    public static final Duration DEFAULT_ACCESS_TOKEN_TTL = Duration.ofMinutes(15);
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final long expirationTime; // 毫秒
+
+    // Key 與 Parser 只建立一次 (JwtParser 建好後是 immutable，可多執行緒共用)
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser jwtParser = Jwts.parserBuilder()
+            .setSigningKey(signingKey)
+            .build();
+
+    // 已驗證過的 Token，重複的請求可跳過驗簽與 JSON 解析
+    private final VerifiedTokenCache tokenCache;
+
+    // jwt.parse: 驗簽 + 解析 (快取未命中才會發生)
+    // jwt.verify: 整個 validateToken，依 cache=hit/miss 分開統計
+    private final Timer parseTimer;
+    private final Timer verifyHitTimer;
+    private final Timer verifyMissTimer;
+
+    // cacheCapacity = 0 表示不使用快取
+    public JwtUtil(MeterRegistry meterRegistry,
+            @Value("${app.jwt.access-token-ttl:15m}") Duration accessTokenTtl,
+            @Value("${app.jwt.cache-capacity:10000}") int cacheCapacity) {
+        this.expirationTime = accessTokenTtl.toMillis();
+        this.tokenCache = new VerifiedTokenCache(cacheCapacity);
+        this.parseTimer = Timer.builder("jwt.parse")
+                .description("JWT 驗簽與解析")
+                .register(meterRegistry);
+        this.verifyHitTimer = verifyTimer("hit", meterRegistry);
+        this.verifyMissTimer = verifyTimer("miss", meterRegistry);
+        FunctionCounter.builder("jwt.cache.requests", tokenCache, VerifiedTokenCache::getHits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("jwt.cache.requests", tokenCache, VerifiedTokenCache::getMisses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("jwt.cache.size", tokenCache, VerifiedTokenCache::size)
+                .register(meterRegistry);
+    }
+
+    private static Timer verifyTimer(String cacheResult, MeterRegistry meterRegistry) {
+        return Timer.builder("jwt.verify")
+                .description("驗證 Token 並取得 username")
+                .tag("cache", cacheResult)
+                .register(meterRegistry);
     }
 
-    // 1. 產生 Token
+    // 1. 產生 Token (每個 Token 都有唯一的 jti，撤銷時使用)
     public String generateToken(String username) {
-        return Jwts.builder()
+        return issueToken(username).token();
+    }
+
+    public IssuedToken issueToken(String username) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + expirationTime;
+        String jti = UUID.randomUUID().toString();
+        String token = Jwts.builder()
+                .setId(jti)
                 .setSubject(username)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(expiresAt))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
+        // JWT 的 exp 以秒為單位，這裡也捨去毫秒，與驗證時取得的值一致
+        return new IssuedToken(token, new VerifiedToken(username, jti, expiresAt / 1000 * 1000));
+    }
+
+    public long getExpirationSeconds() {
+        return expirationTime / 1000;
     }
 
     // 2. 驗證並解析 Token (若過期或為偽造會拋出 Exception)
     public String validateTokenAndGetUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return validateToken(token).username();
+    }
+
+    public VerifiedToken validateToken(String token) {
+        long start = System.nanoTime();
+        String cacheKey = VerifiedTokenCache.keyOf(token);
+        VerifiedToken cached = tokenCache.get(cacheKey);
+        if (cached != null) {
+            verifyHitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+
+        try {
+            Claims claims = parseTimer.record(() -> jwtParser.parseClaimsJws(token).getBody());
+            long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+            VerifiedToken verified = new VerifiedToken(claims.getSubject(), claims.getId(), expiresAt);
+            // 沒有 exp 的 Token 無法判斷何時失效，不放進快取
+            if (claims.getExpiration() != null) {
+                tokenCache.put(cacheKey, verified);
+            }
+            return verified;
+        } finally {
+            // 驗證失敗 (過期、偽造) 也算一次 miss
+            verifyMissTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // 3. 快取統計
+    public long getCacheHits() {
+        return tokenCache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return tokenCache.getMisses();
+    }
+
+    public int getCacheSize() {
+        return tokenCache.size();
+    }
+
+    // 新產生的 Token 與它的內容 (不必再解析一次)
+    public record IssuedToken(String token, VerifiedToken claims) {
     }
 }
@@ -0,0 +1,96 @@
+package tw.com.eeit.ajax.ch4.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每個 client 一個 token bucket (容量 capacity，每 period 補滿)
+ *
+ * - 每個 bucket 只有一個 AtomicLong：記錄「下一個 token 理論上何時補回」(GCRA)，
+ *   取 token = 一次 CAS，不需要鎖，也不需要背景執行緒補 token
+ * - bucket 分散在多個 stripe (各自一個 ConcurrentHashMap)，清理時一次只掃一個 stripe
+ * - 時間已經過了的 bucket 等同全新的 bucket，可以直接移除而不影響結果；
+ *   stripe 滿了時先移除這些閒置的 bucket，仍然滿了就任意淘汰一部分，確保記憶體有上限
+ */
+public class TokenBucketLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final long intervalNanos;     // 補一個 token 需要的時間
+    private final long burstNanos;        // capacity 個 token 的時間
+    private final int stripeCapacity;
+    @SuppressWarnings("unchecked")
+    private final Map<String, AtomicLong>[] stripes = new Map[STRIPES];
+
+    public TokenBucketLimiter(int capacity, Duration period, int maxClients) {
+        if (capacity <= 0 || period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("capacity 與 period 必須大於 0");
+        }
+        this.intervalNanos = Math.max(1, period.toNanos() / capacity);
+        this.burstNanos = intervalNanos * capacity;
+        this.stripeCapacity = Math.max(1, maxClients / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * 取一個 token
+     * @return 0 表示允許；大於 0 表示被拒絕，數值為還要等多久 (nanos) 才會有 token
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = bucket(key);
+        while (true) {
+            long now = System.nanoTime();
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private AtomicLong bucket(String key) {
+        Map<String, AtomicLong> stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        AtomicLong bucket = stripe.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.size() >= stripeCapacity) {
+            evict(stripe);
+        }
+        // 初始值 = 已經過去的時間點 (bucket 是滿的)
+        return stripe.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime() - burstNanos));
+    }
+
+    private void evict(Map<String, AtomicLong> stripe) {
+        long now = System.nanoTime();
+        stripe.values().removeIf(bucket -> bucket.get() - now <= 0);
+
+        if (stripe.size() < stripeCapacity) {
+            return;
+        }
+        // 都還在用：淘汰的 client 等於拿到一個新的 (滿的) bucket，寧可放寬也不要無限成長
+        Iterator<AtomicLong> it = stripe.values().iterator();
+        int toRemove = stripe.size() - stripeCapacity + Math.max(1, stripeCapacity / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package tw.com.eeit.ajax.ch4.utils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 已撤銷的 Access Token (jti)
+ * 每個已登入的請求都要檢查一次，所以先問 bloom filter：
+ * 回答「一定沒有」時直接放行 (只讀幾個 bit)，回答「可能有」時才查精確的 Map
+ *
+ * - bloom filter 分兩代，每隔一個 Access Token 有效期輪替一次 (previous 丟掉、current 變成 previous)，
+ *   撤銷的 Token 最晚在兩代之後就已經過期，不必再記得
+ * - 精確的 Map 記錄 jti 與 exp，輪替時移除已過期的項目
+ * - bloom filter 只會誤判「可能有」，不會漏掉，所以結果與只用 Map 完全相同
+ *
+ * 指標: jwt.revoked.size、jwt.revocation.lookups{result=revoked|false_positive}
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final int HASHES = 7; // 每個 entry 約 10 bits 時，誤判率約 1%
+    private static final int BITS_PER_ENTRY = 10;
+
+    private final int bits;
+    private final long generationMillis;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final AtomicLong nextRotation;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    private final Counter revokedLookups;
+    private final Counter falsePositives;
+
+    public TokenRevocationList(MeterRegistry meterRegistry,
+            @Value("${app.jwt.access-token-ttl:15m}") Duration accessTokenTtl,
+            @Value("${app.jwt.revocation.expected-per-generation:10000}") int expectedPerGeneration) {
+        this.bits = Math.max(64, expectedPerGeneration * BITS_PER_ENTRY);
+        this.generationMillis = accessTokenTtl.toMillis();
+        this.current = new BloomFilter(bits);
+        this.previous = new BloomFilter(bits);
+        this.nextRotation = new AtomicLong(System.currentTimeMillis() + generationMillis);
+
+        Gauge.builder("jwt.revoked.size", revoked, Map::size).register(meterRegistry);
+        this.revokedLookups = Counter.builder("jwt.revocation.lookups").tag("result", "revoked")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("jwt.revocation.lookups").tag("result", "false_positive")
+                .register(meterRegistry);
+    }
+
+    public void revoke(String jti, long expiresAtMillis) {
+        if (jti == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return; // 已經過期的 Token 本來就不能用
+        }
+        rotateIfDue();
+        revoked.put(jti, expiresAtMillis);
+        long h1 = hash(jti);
+        current.add(h1, mix(h1));
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        rotateIfDue();
+        if (revoked.isEmpty()) {
+            return false;
+        }
+        long h1 = hash(jti);
+        long h2 = mix(h1);
+        if (!current.mightContain(h1, h2) && !previous.mightContain(h1, h2)) {
+            return false;
+        }
+        if (revoked.containsKey(jti)) {
+            revokedLookups.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        long next = nextRotation.get();
+        if (now < next || !nextRotation.compareAndSet(next, now + generationMillis)) {
+            return;
+        }
+        // 先換 bloom filter 再清 Map：清掉的項目一定已經過期，中間被問到也沒關係
+        previous = current;
+        current = new BloomFilter(bits);
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // 第二個 hash (MurmurHash3 fmix64)，奇數才能走遍所有位置
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h | 1;
+    }
+
+    // 固定大小、只能新增的 bloom filter (double hashing: h1 + i * h2)
+    private static class BloomFilter {
+        private final AtomicLongArray words;
+        private final int bits;
+
+        BloomFilter(int bits) {
+            this.words = new AtomicLongArray((bits + 63) / 64);
+            this.bits = words.length() * 64;
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < HASHES; i++) {
+                int index = (int) Math.floorMod(h1 + i * h2, (long) bits);
+                long mask = 1L << index;
+                words.getAndAccumulate(index >>> 6, mask, (word, bit) -> word | bit);
+            }
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < HASHES; i++) {
+                int index = (int) Math.floorMod(h1 + i * h2, (long) bits);
+                if ((words.get(index >>> 6) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
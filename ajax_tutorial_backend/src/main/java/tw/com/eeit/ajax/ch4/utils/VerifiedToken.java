@@ -0,0 +1,8 @@
+package tw.com.eeit.ajax.ch4.utils;
+
+/**
+ * 驗證通過的 Access Token 內容
+ * jti 為每個 Token 唯一的 id (撤銷時使用)；expiresAtMillis 為 exp
+ */
+public record VerifiedToken(String username, String jti, long expiresAtMillis) {
+}
@@ -0,0 +1,104 @@
+package tw.com.eeit.ajax.ch4.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已驗證 Token 的快取
+ * - Key 為 Token 的 SHA-256 摘要 (不直接保存原始 Token)
+ * - 容量有上限，並在 Token 的 exp 到期後失效
+ */
+public class VerifiedTokenCache {
+
+    // MessageDigest 不是 thread-safe，每個執行緒各用一個，不必每次 getInstance (要查 Provider)
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final int capacity;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // 由 Token 計算快取用的 Key
+    public static String keyOf(String token) {
+        // digest() 計算完會 reset，可直接重複使用
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    public VerifiedToken get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            // 已過 exp，立即移除，讓呼叫端重新驗證 (會拋出 ExpiredJwtException)
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.token();
+    }
+
+    // 過期時間取自 token.expiresAtMillis
+    public void put(String key, VerifiedToken token) {
+        if (capacity <= 0) {
+            return;
+        }
+        if (entries.size() >= capacity) {
+            evict();
+        }
+        entries.put(key, new Entry(token));
+    }
+
+    // 先清掉過期的項目，若仍然滿了就任意淘汰一部分，確保記憶體有上限
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+
+        if (entries.size() < capacity) {
+            return;
+        }
+        Iterator<String> it = entries.keySet().iterator();
+        int toRemove = entries.size() - capacity + Math.max(1, capacity / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(VerifiedToken token) {
+        boolean isExpired(long now) {
+            return now >= token.expiresAtMillis();
+        }
+    }
+}
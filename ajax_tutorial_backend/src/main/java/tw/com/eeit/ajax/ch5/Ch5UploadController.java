@@ -1,28 +1,80 @@
 package tw.com.eeit.ajax.ch5;
 
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import tw.com.eeit.ajax.ch5.model.UploadStatus;
+import tw.com.eeit.ajax.ch5.service.ChunkedUploadService;
 
 import java.io.IOException;
 
+@Slf4j
 @RestController
 @RequestMapping("/ch5")
 public class Ch5UploadController {
 
+    private final ChunkedUploadService chunkedUploadService;
+
+    public Ch5UploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
     @PostMapping("/upload")
     public String upload(@RequestParam("myFile") MultipartFile file, 
                          @RequestParam("description") String description) throws IOException {
         
-        System.out.println("收到檔案: " + file.getOriginalFilename());
-        System.out.println("檔案大小: " + file.getSize());
-        System.out.println("描述: " + description);
+        log.info("收到檔案: {}, 檔案大小: {}, 描述: {}", file.getOriginalFilename(), file.getSize(), description);
         
         // 實際專案會 save 到某個資料夾，這裡僅做演示
         // file.transferTo(new File("C:/uploads/" + file.getOriginalFilename()));
 
         return "上傳成功: " + file.getOriginalFilename();
     }
+
+    // --- 分段上傳 (大檔案 / 可續傳) ---
+
+    // 1. 建立上傳，取得 uploadId
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadStatus> initUpload(@RequestBody InitUploadRequest request) throws IOException {
+        UploadStatus status = chunkedUploadService.init(request.getFileName(), request.getSize()).toStatus();
+        return ResponseEntity.status(HttpStatus.CREATED).body(status);
+    }
+
+    // 2. 查詢進度 (中斷後從回傳的 offset 續傳)
+    @GetMapping("/uploads/{uploadId}")
+    public UploadStatus getUpload(@PathVariable String uploadId) {
+        return chunkedUploadService.find(uploadId).toStatus();
+    }
+
+    // 3. 上傳一個 chunk，body 為原始位元組 (application/octet-stream)
+    @PutMapping("/uploads/{uploadId}")
+    public UploadStatus uploadChunk(@PathVariable String uploadId,
+                                    @RequestParam long offset,
+                                    HttpServletRequest request) throws IOException {
+        return chunkedUploadService.writeChunk(uploadId, offset, request.getInputStream()).toStatus();
+    }
+
+    // 4. 完成上傳，可帶入 sha256 讓 Server 比對
+    @PostMapping("/uploads/{uploadId}/complete")
+    public UploadStatus completeUpload(@PathVariable String uploadId,
+                                       @RequestParam(required = false) String sha256) throws IOException {
+        return chunkedUploadService.complete(uploadId, sha256).toStatus();
+    }
+
+    // 5. 取消上傳
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) throws IOException {
+        chunkedUploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Data
+    public static class InitUploadRequest {
+        private String fileName;
+        private long size;
+    }
 }
@@ -0,0 +1,53 @@
+package tw.com.eeit.ajax.ch5.model;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 一次分段上傳的進度
+ * - offset: 已確認寫入的位元組數 (中斷後從這裡續傳)
+ * - digest: 隨著資料寫入逐步計算的 SHA-256
+ * - path: 上傳中為 <id>.part，完成後移到 <id> (見 ChunkedUploadService)
+ * - lastAccess: 最後一次操作的時間 (System.nanoTime)，閒置太久會被 ChunkedUploadService 清除
+ */
+@Getter
+public class UploadSession {
+
+    private final String id;
+    private final String fileName;
+    private final long size;
+    private final MessageDigest digest;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Setter
+    private volatile Path path;
+    @Setter
+    private volatile long offset;
+    @Setter
+    private volatile String sha256; // 完成後才有值
+    private volatile long lastAccess = System.nanoTime();
+
+    public UploadSession(String id, String fileName, long size, Path path, MessageDigest digest) {
+        this.id = id;
+        this.fileName = fileName;
+        this.size = size;
+        this.path = path;
+        this.digest = digest;
+    }
+
+    public void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    public boolean isCompleted() {
+        return sha256 != null;
+    }
+
+    public UploadStatus toStatus() {
+        return new UploadStatus(id, fileName, size, offset, isCompleted(), sha256);
+    }
+}
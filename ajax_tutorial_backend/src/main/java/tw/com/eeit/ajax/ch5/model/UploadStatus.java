@@ -0,0 +1,10 @@
+package tw.com.eeit.ajax.ch5.model;
+
+public record UploadStatus(
+        String uploadId,
+        String fileName,
+        long size,
+        long offset,
+        boolean completed,
+        String sha256) {
+}
@@ -0,0 +1,266 @@
+package tw.com.eeit.ajax.ch5.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.extern.slf4j.Slf4j;
+import tw.com.eeit.ajax.ch5.model.UploadSession;
+
+/**
+ * 分段 (Chunked) 上傳
+ * 每個 chunk 直接從 request body 串流寫入預先配置好大小的檔案，
+ * 不論檔案多大，每次寫入只使用一個固定大小的 buffer。
+ *
+ * - 宣告的檔案大小不可超過 app.upload.max-size (超過回 413)，避免預先配置的檔案塞滿磁碟
+ * - 超過 app.upload.session-ttl 沒有任何操作的上傳會被清除；未完成的連同 .part 檔一起刪除
+ *
+ * 檔案位置 (app.upload.dir，預設 ${java.io.tmpdir}/ajax-uploads):
+ * - <id>.part: 上傳中
+ * - <id> + <id>.properties: 完成的檔案與它的 metadata (原始檔名、大小、sha256)
+ *   完成時以 atomic move 從 .part 改名，不會看到寫到一半的檔案；session 清除後仍保留，可由 metadata 找回
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path uploadDir;
+    private final long maxSize;
+    private final long sessionTtlNanos;
+    private final long purgeIntervalNanos;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurge = new AtomicLong(System.nanoTime());
+
+    public ChunkedUploadService(@Value("${app.upload.dir:${java.io.tmpdir}/ajax-uploads}") String uploadDir,
+            @Value("${app.upload.max-size:1GB}") DataSize maxSize,
+            @Value("${app.upload.session-ttl:1h}") Duration sessionTtl) throws IOException {
+        this.uploadDir = Files.createDirectories(Path.of(uploadDir));
+        this.maxSize = maxSize.toBytes();
+        this.sessionTtlNanos = sessionTtl.toNanos();
+        this.purgeIntervalNanos = Math.min(sessionTtlNanos, Duration.ofMinutes(1).toNanos());
+    }
+
+    // 1. 建立上傳：預先配置檔案大小
+    public UploadSession init(String fileName, long size) throws IOException {
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size 必須大於 0");
+        }
+        if (size > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "檔案大小不可超過 " + maxSize + " bytes");
+        }
+        purgeIdleIfDue();
+
+        String id = UUID.randomUUID().toString();
+        Path path = uploadDir.resolve(id + ".part");
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+        }
+
+        UploadSession session = new UploadSession(id, fileName, size, path, newDigest());
+        sessions.put(id, session);
+        return session;
+    }
+
+    public UploadSession find(String id) {
+        UploadSession session = sessions.get(id);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "找不到上傳: " + id);
+        }
+        return session;
+    }
+
+    // 2. 寫入一個 chunk：offset 必須等於目前已確認的位置 (依序寫入才能逐步計算 checksum)
+    public UploadSession writeChunk(String id, long offset, InputStream body) throws IOException {
+        UploadSession session = find(id);
+
+        // 同一個上傳同時只允許一個 chunk 寫入
+        if (!session.getLock().tryLock()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "此上傳已有 chunk 正在寫入");
+        }
+        try {
+            checkNotPurged(session);
+            if (session.isCompleted()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "上傳已完成");
+            }
+            if (offset != session.getOffset()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "offset 不符，請從 " + session.getOffset() + " 繼續上傳");
+            }
+            session.touch();
+            streamToFile(session, body);
+            return session;
+        } finally {
+            session.touch();
+            session.getLock().unlock();
+        }
+    }
+
+    private void streamToFile(UploadSession session, InputStream body) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        MessageDigest digest = session.getDigest();
+        long position = session.getOffset();
+
+        try (ReadableByteChannel in = Channels.newChannel(body);
+                FileChannel out = FileChannel.open(session.getPath(), StandardOpenOption.WRITE)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                if (position + buffer.remaining() > session.getSize()) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "資料超過宣告的檔案大小");
+                }
+
+                ByteBuffer written = buffer.duplicate();
+                while (buffer.hasRemaining()) {
+                    position += out.write(buffer, position);
+                }
+                digest.update(written);
+
+                // 每寫完一個 buffer 就更新進度，連線中斷時可從這裡續傳
+                session.setOffset(position);
+                buffer.clear();
+            }
+        }
+    }
+
+    // 3. 完成上傳：確認所有位元組都已寫入，並比對 checksum (若有提供)，再把 .part 移到最終的檔名
+    public UploadSession complete(String id, String expectedSha256) throws IOException {
+        UploadSession session = find(id);
+
+        session.getLock().lock();
+        try {
+            checkNotPurged(session);
+            session.touch();
+            if (session.isCompleted()) {
+                return session;
+            }
+            if (session.getOffset() != session.getSize()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "尚未上傳完畢: " + session.getOffset() + "/" + session.getSize());
+            }
+
+            String sha256 = HexFormat.of().formatHex(digestOf(session));
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "checksum 不符: " + sha256);
+            }
+            store(session, sha256);
+            session.setSha256(sha256);
+            return session;
+        } finally {
+            session.getLock().unlock();
+        }
+    }
+
+    // metadata 先寫好，再以 atomic move 改名：出現 <id> 時 metadata 一定已經存在
+    private void store(UploadSession session, String sha256) throws IOException {
+        Path target = uploadDir.resolve(session.getId());
+        Path metadata = metadataPath(session.getId());
+
+        Properties properties = new Properties();
+        properties.setProperty("fileName", String.valueOf(session.getFileName()));
+        properties.setProperty("size", String.valueOf(session.getSize()));
+        properties.setProperty("sha256", sha256);
+        try (OutputStream out = Files.newOutputStream(metadata)) {
+            properties.store(out, null);
+        }
+
+        try {
+            Files.move(session.getPath(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(metadata);
+            throw e;
+        }
+        session.setPath(target);
+    }
+
+    // 4. 取消上傳 (已完成的連同檔案與 metadata 一起刪除)
+    public void abort(String id) throws IOException {
+        UploadSession session = sessions.remove(id);
+        if (session != null) {
+            session.getLock().lock();
+            try {
+                Files.deleteIfExists(session.getPath());
+                Files.deleteIfExists(metadataPath(id));
+            } finally {
+                session.getLock().unlock();
+            }
+        }
+    }
+
+    private Path metadataPath(String id) {
+        return uploadDir.resolve(id + ".properties");
+    }
+
+    // find 之後、取得 lock 之前被清除的上傳 (檔案可能已經刪除)
+    private void checkNotPurged(UploadSession session) {
+        if (sessions.get(session.getId()) != session) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "找不到上傳: " + session.getId());
+        }
+    }
+
+    // 最多每分鐘 (或每個 session-ttl) 清一次 (新的上傳建立時順便檢查)，正在寫入 chunk 的上傳不會被清除
+    private void purgeIdleIfDue() {
+        long now = System.nanoTime();
+        long next = nextPurge.get();
+        if (now - next < 0 || !nextPurge.compareAndSet(next, now + purgeIntervalNanos)) {
+            return;
+        }
+        for (UploadSession session : sessions.values()) {
+            if (now - session.getLastAccess() <= sessionTtlNanos || !session.getLock().tryLock()) {
+                continue;
+            }
+            try {
+                if (!sessions.remove(session.getId(), session) || session.isCompleted()) {
+                    continue; // 完成的檔案 (<id> + <id>.properties) 保留，只移除進度
+                }
+                Files.deleteIfExists(session.getPath());
+                log.info("清除閒置的上傳 {} ({}/{} bytes)", session.getId(), session.getOffset(), session.getSize());
+            } catch (IOException e) {
+                log.warn("刪除閒置的上傳檔案失敗: {}", session.getPath(), e);
+            } finally {
+                session.getLock().unlock();
+            }
+        }
+    }
+
+    // 以 clone 取得結果，不會重設原本的 digest 狀態
+    private byte[] digestOf(UploadSession session) {
+        try {
+            return ((MessageDigest) session.getDigest().clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package tw.com.eeit.ajax.common.concurrent;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 依延遲自動調整的同時處理上限 (gradient 演算法)
+ * 固定大小的執行緒池不知道 DB 變慢了，只會讓請求越排越長；
+ * 這裡比較「最近的平均延遲 (short RTT)」與「長期的基準延遲 (long RTT)」：
+ *
+ * - short RTT 明顯變長 → 表示開始排隊，上限按比例往下調 (最多一次減半)
+ * - 延遲正常且真的有用到上限 → 每次多給 queueSize 個名額，慢慢往上試
+ * - 超過上限的請求由呼叫端立即拒絕，不排隊
+ *
+ * 每個 window 最多更新一次上限，acquire / release 本身只有 CAS，不需要鎖
+ *
+ * 指標: concurrency.limit、concurrency.in_flight、concurrency.rejected、concurrency.rtt{window=short|long}
+ */
+public class GradientConcurrencyLimiter {
+
+    // short RTT 超過 long RTT 的 1.5 倍才算變慢 (容許一般的抖動)
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int QUEUE_SIZE = 4;
+    // long RTT 約為最近 600 個 window 的指數移動平均
+    private static final double LONG_RTT_FACTOR = 2.0 / (600 + 1);
+    private static final int MIN_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // 目前 window 的樣本
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder rttCount = new LongAdder();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong nextUpdate;
+
+    // 只在 updateLimit 內讀寫
+    private double estimatedLimit;
+    private volatile double shortRtt;
+    private volatile double longRtt;
+
+    private final Counter rejected;
+
+    public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration window,
+            MeterRegistry meterRegistry) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = window.toNanos();
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.nextUpdate = new AtomicLong(System.nanoTime() + windowNanos);
+
+        Gauge.builder("concurrency.limit", this, GradientConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("concurrency.in_flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("concurrency.rtt", this, limiter -> limiter.shortRtt / 1e6)
+                .tag("window", "short").baseUnit("milliseconds").register(meterRegistry);
+        Gauge.builder("concurrency.rtt", this, limiter -> limiter.longRtt / 1e6)
+                .tag("window", "long").baseUnit("milliseconds").register(meterRegistry);
+        this.rejected = Counter.builder("concurrency.rejected").register(meterRegistry);
+    }
+
+    /**
+     * 取得一個名額
+     * @return false 表示已達上限，呼叫端應立即拒絕 (不必呼叫 release)
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                maxInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    // 處理完成，rttNanos 為這個請求的處理時間
+    public void release(long rttNanos) {
+        inFlight.decrementAndGet();
+        rttSum.add(rttNanos);
+        rttCount.increment();
+
+        long now = System.nanoTime();
+        long next = nextUpdate.get();
+        if (now - next >= 0 && nextUpdate.compareAndSet(next, now + windowNanos)) {
+            updateLimit();
+        }
+    }
+
+    // 不列入延遲統計 (例如請求改為非同步處理)
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // 每個 window 只有搶到 nextUpdate 的那個執行緒會進來
+    private synchronized void updateLimit() {
+        long count = rttCount.sumThenReset();
+        long sum = rttSum.sumThenReset();
+        int peak = maxInFlight.getAndSet(inFlight.get());
+        if (count < MIN_SAMPLES) {
+            // 樣本太少就併到下一個 window
+            rttCount.add(count);
+            rttSum.add(sum);
+            maxInFlight.accumulateAndGet(peak, Math::max);
+            return;
+        }
+
+        double rtt = (double) sum / count;
+        shortRtt = rtt;
+        double base = longRtt == 0 ? rtt : longRtt * (1 - LONG_RTT_FACTOR) + rtt * LONG_RTT_FACTOR;
+        // 負載退去後延遲大幅下降時，基準要跟著快速下修，否則會一直高估可承受的延遲
+        if (base / rtt > 2) {
+            base *= 0.95;
+        }
+        longRtt = base;
+
+        // 沒有真的用到上限時，延遲不代表上限的好壞，不調整
+        if (peak < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * base / rtt));
+        double newLimit = estimatedLimit * gradient + QUEUE_SIZE;
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
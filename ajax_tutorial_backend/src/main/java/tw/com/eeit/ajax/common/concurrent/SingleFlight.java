@@ -0,0 +1,133 @@
+package tw.com.eeit.ajax.common.concurrent;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 合併同一個 key 的並行讀取 (single flight)
+ * 熱門資料 (快取剛失效、剛部署完) 同時湧入的相同請求只有第一個真的去查 DB，
+ * 其他請求等待同一個 CompletableFuture 的結果
+ *
+ * - 沒有鎖：以 ConcurrentMap 的 putIfAbsent / replace 決定誰負責載入
+ * - resultTtl > 0 時，載入完成的結果在這段時間內直接重用；0 表示只合併進行中的載入
+ * - 載入失敗時例外會傳給所有等待者，且不會被保留
+ * - 資料寫入後呼叫 invalidate，之後的請求一定會重新載入
+ *
+ * 指標: singleflight.calls{name, result=loaded|collapsed|reused}、singleflight.in_flight{name}
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final long resultTtlNanos;
+
+    private final Counter loaded;
+    private final Counter collapsed;
+    private final Counter reused;
+
+    public SingleFlight(String name, Duration resultTtl, MeterRegistry meterRegistry) {
+        this.resultTtlNanos = resultTtl.toNanos();
+        this.loaded = callCounter(name, "loaded", meterRegistry);
+        this.collapsed = callCounter(name, "collapsed", meterRegistry);
+        this.reused = callCounter(name, "reused", meterRegistry);
+        Gauge.builder("singleflight.in_flight", flights, ConcurrentMap::size)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    private static Counter callCounter(String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("singleflight.calls")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 取得 key 的值：已有進行中 (或還沒過期) 的載入就共用它的結果，否則由目前的執行緒呼叫 loader
+     * loader 的回傳值會交給所有等待者，請回傳不會再被修改的物件
+     */
+    public V load(K key, Supplier<V> loader) {
+        while (true) {
+            Flight<V> current = flights.get(key);
+            if (current != null && !current.isExpired()) {
+                (current.isDone() ? reused : collapsed).increment();
+                return current.await();
+            }
+
+            Flight<V> mine = new Flight<>();
+            boolean won = current == null
+                    ? flights.putIfAbsent(key, mine) == null
+                    : flights.replace(key, current, mine);
+            if (won) {
+                loaded.increment();
+                return run(key, mine, loader);
+            }
+            // 被別的執行緒搶先，重新讀取 (下一輪會加入它的載入)
+        }
+    }
+
+    // 移除目前的載入 / 結果；已經在等待的呼叫者仍會拿到原本的結果
+    public void invalidate(K key) {
+        flights.remove(key);
+    }
+
+    private V run(K key, Flight<V> flight, Supplier<V> loader) {
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.future.completeExceptionally(e);
+            throw e;
+        }
+
+        if (resultTtlNanos > 0) {
+            flight.expiresAt = System.nanoTime() + resultTtlNanos;
+            // 之後沒人再查這個 key 時，也要把結果清掉
+            CompletableFuture.delayedExecutor(resultTtlNanos, TimeUnit.NANOSECONDS)
+                    .execute(() -> flights.remove(key, flight));
+        } else {
+            flights.remove(key, flight);
+        }
+        flight.future.complete(value);
+        return value;
+    }
+
+    private static class Flight<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        // 0 = 載入中 (或不重用結果)
+        volatile long expiresAt;
+
+        boolean isDone() {
+            return future.isDone();
+        }
+
+        boolean isExpired() {
+            long expires = expiresAt;
+            return expires != 0 && System.nanoTime() - expires >= 0;
+        }
+
+        V await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                // 還原成 loader 丟出的原始例外
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e;
+            }
+        }
+    }
+}
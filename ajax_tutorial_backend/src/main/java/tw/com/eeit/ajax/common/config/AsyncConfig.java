@@ -0,0 +1,15 @@
+package tw.com.eeit.ajax.common.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * 開啟 @Async
+ * 使用 Spring Boot 自動設定的 applicationTaskExecutor:
+ * - 預設: ThreadPoolTaskExecutor (platform threads)
+ * - spring.threads.virtual.enabled=true: 每個任務一條 Virtual Thread
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
@@ -0,0 +1,52 @@
+package tw.com.eeit.ajax.common.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import tw.com.eeit.ajax.common.concurrent.GradientConcurrencyLimiter;
+import tw.com.eeit.ajax.common.web.ConcurrencyLimitInterceptor;
+
+/**
+ * 全域的自適應同時處理上限 (見 GradientConcurrencyLimiter)
+ * DB 變慢時 (例如 mssql profile 的遠端資料庫) 上限會自動下修，多出來的請求立即回 503，
+ * 而不是全部卡在 Tomcat 執行緒與連線池裡，讓每個人的延遲一起變長
+ * app.concurrency-limit.enabled=false 可關閉
+ *
+ * 上傳 (/ch5/**) 與匯出 (*:export) 不列入：處理時間取決於檔案大小與 client 的網路速度，
+ * 不是伺服器變慢，列入的話一個慢速上傳就會把所有 API 的上限往下拉
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.concurrency-limit.enabled", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public GradientConcurrencyLimiter concurrencyLimiter(MeterRegistry meterRegistry,
+            @Value("${app.concurrency-limit.initial:20}") int initialLimit,
+            @Value("${app.concurrency-limit.min:10}") int minLimit,
+            @Value("${app.concurrency-limit.max:200}") int maxLimit,
+            @Value("${app.concurrency-limit.window:100ms}") Duration window) {
+        return new GradientConcurrencyLimiter(initialLimit, minLimit, maxLimit, window, meterRegistry);
+    }
+
+    @Bean
+    public WebMvcConfigurer concurrencyLimit(GradientConcurrencyLimiter concurrencyLimiter) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(@NonNull InterceptorRegistry registry) {
+                // 最先執行，被拒絕的請求不必經過其他 Interceptor
+                registry.addInterceptor(new ConcurrencyLimitInterceptor(concurrencyLimiter))
+                        .excludePathPatterns("/actuator/**", "/error", "/ch5/**",
+                                "/api/ch3_1/users:export", "/api/ch3_1/orders:export")
+                        .order(Integer.MIN_VALUE);
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package tw.com.eeit.ajax.common.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.lang.NonNull;
+
+/**
+ * 模擬遠端資料庫的網路延遲 (H2 in-memory 太快，看不出執行緒被卡住的效果)
+ * 設定 app.db.injected-latency-ms=50 後，每次執行 PreparedStatement 前都會先 sleep
+ * 只用於壓力測試，不要在正式環境開啟
+ */
+@Configuration
+@ConditionalOnProperty("app.db.injected-latency-ms")
+public class InjectedLatencyConfig {
+
+    @Bean
+    public static BeanPostProcessor injectedLatencyDataSourcePostProcessor(
+            @Value("${app.db.injected-latency-ms}") long latencyMillis) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                // 只包真正的連線池；包在外層的 DataSource (例如讀寫分流的 LazyConnectionDataSourceProxy) 不重複延遲
+                if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)
+                        && latencyMillis > 0) {
+                    return new LatencyDataSource(dataSource, latencyMillis);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // 繼承 DelegatingDataSource，unwrap() 仍可取得原本的 HikariDataSource (連線池 metrics 需要)
+    static class LatencyDataSource extends DelegatingDataSource {
+
+        private final long latencyMillis;
+
+        LatencyDataSource(DataSource target, long latencyMillis) {
+            super(target);
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        @NonNull
+        public Connection getConnection() throws SQLException {
+            return wrap(super.getConnection());
+        }
+
+        @Override
+        @NonNull
+        public Connection getConnection(@NonNull String username, @NonNull String password) throws SQLException {
+            return wrap(super.getConnection(username, password));
+        }
+
+        // Connection 產生的 Statement 也包起來
+        private Connection wrap(Connection connection) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                return result instanceof Statement statement ? wrap(statement) : result;
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, handler);
+        }
+
+        // PreparedStatement 的 execute* 先 sleep 再交給真正的 Statement
+        // 一般 Statement (啟動時的 DDL) 不延遲，避免啟動時間被拉長
+        private Statement wrap(Statement statement) {
+            if (!(statement instanceof PreparedStatement)) {
+                return statement;
+            }
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+            InvocationHandler handler = (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    sleep();
+                }
+                return invoke(statement, method, args);
+            };
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+                    handler);
+        }
+
+        private void sleep() throws SQLException {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while injecting latency", e);
+            }
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
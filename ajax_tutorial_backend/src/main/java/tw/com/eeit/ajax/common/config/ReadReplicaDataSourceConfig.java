@@ -0,0 +1,91 @@
+package tw.com.eeit.ajax.common.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.lang.NonNull;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import tw.com.eeit.ajax.common.datasource.ReadWriteRoutingDataSource;
+import tw.com.eeit.ajax.common.datasource.ReadYourWrites;
+import tw.com.eeit.ajax.common.datasource.ReplicaCacheModeJpaDialect;
+
+/**
+ * 主資料庫 + 唯讀副本兩個連線池，依交易是否 readOnly 分流 (見 ReadWriteRoutingDataSource)
+ * 有設定 app.datasource.replica.jdbc-url 時才啟用，否則維持 Spring Boot 預設的單一連線池
+ *
+ * - primary: spring.datasource.* 與 spring.datasource.hikari.* (與原本相同)
+ * - replica: app.datasource.replica.* (HikariCP 的屬性，例如 maximum-pool-size)，連線一律 readOnly
+ * 兩個連線池各自有 hikaricp.* 指標 (pool=primary / replica)
+ * 副本讀到的資料不放進二級快取，避免落後的資料在 evict 之後被寫回快取
+ */
+@Configuration
+@ConditionalOnProperty("app.datasource.replica.jdbc-url")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(
+            @Value("${app.datasource.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+        return new ReadYourWrites(readYourWritesWindow);
+    }
+
+    // JPA 使用的 DataSource；以 DataSource 型別注入，InjectedLatencyConfig 包裝過的連線池也能用
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") DataSource replicaDataSource, ReadYourWrites readYourWrites,
+            MeterRegistry meterRegistry) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource,
+                readYourWrites, meterRegistry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // 走副本的交易不寫入二級快取 (見 ReplicaCacheModeJpaDialect)
+    // JpaTransactionManager 在 afterPropertiesSet 才從 EntityManagerFactory 取得 JpaDialect，所以在初始化之後替換
+    @Bean
+    public static BeanPostProcessor replicaCacheModePostProcessor(ObjectProvider<ReadYourWrites> readYourWrites) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                if (bean instanceof JpaTransactionManager transactionManager) {
+                    transactionManager.setJpaDialect(new ReplicaCacheModeJpaDialect(
+                            transactionManager.getJpaDialect(), readYourWrites.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+}
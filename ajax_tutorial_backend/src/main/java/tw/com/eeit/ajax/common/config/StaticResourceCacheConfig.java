@@ -0,0 +1,53 @@
+package tw.com.eeit.ajax.common.config;
+
+import java.util.regex.Pattern;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 靜態檔的 Cache-Control
+ * 模板用 th:src="@{/js/...}" 時，網址會被改寫成帶內容 hash 的版本 (例如 BackButton-<md5>.js)，
+ * 檔案內容一變網址就跟著變，所以可以讓瀏覽器快取一年而不必再問伺服器；
+ * 沒有 hash 的網址 (直接寫死路徑) 則每次都要用 ETag / Last-Modified 確認
+ *
+ * 註: 開發時 DevTools 預設 spring.web.resources.cache.period=0，靜態檔一律回 no-store
+ */
+@Configuration
+public class StaticResourceCacheConfig {
+
+    // VersionResourceResolver (ContentVersionStrategy) 產生的檔名: name-<32 碼 md5>.ext
+    private static final Pattern FINGERPRINTED = Pattern.compile("-[0-9a-f]{32}\\.[^/]+$");
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    @Bean
+    public WebMvcConfigurer staticResourceCacheControl() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(@NonNull InterceptorRegistry registry) {
+                registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(@NonNull HttpServletRequest request,
+                            @NonNull HttpServletResponse response, @NonNull Object handler) {
+                        if (handler instanceof ResourceHttpRequestHandler) {
+                            boolean fingerprinted = FINGERPRINTED.matcher(request.getRequestURI()).find();
+                            response.setHeader(HttpHeaders.CACHE_CONTROL, fingerprinted ? IMMUTABLE : REVALIDATE);
+                        }
+                        return true;
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package tw.com.eeit.ajax.common.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.lang.NonNull;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 讀寫分流：@Transactional(readOnly = true) 的交易走唯讀副本，其他都走主資料庫
+ *
+ * - 寫入交易 → primary；真的執行過 INSERT / UPDATE / DELETE 才在 commit 後記錄這個 client (見 ReadYourWrites)
+ * - 唯讀交易，但 client 剛寫入過 → primary
+ * - 唯讀交易 → replica
+ * - 沒有交易 (啟動時建立 schema 等) → primary
+ *
+ * 必須再包一層 LazyConnectionDataSourceProxy：交易開始時 JpaTransactionManager 就會要連線，
+ * 那時 readOnly 還沒設定到 TransactionSynchronizationManager；
+ * 延到第一個 SQL 執行時才決定要哪一個連線池，才看得到 readOnly
+ *
+ * 連線要在交易結束時歸還，下一個交易才會重新分流，所以 spring.jpa.open-in-view 必須關閉
+ * (開啟時整個請求共用同一條連線，唯讀交易拿到的 replica 連線會被之後的寫入交易沿用)
+ *
+ * 指標: datasource.routing{route=write|read_your_writes|replica|non_transactional}、datasource.read_your_writes.clients
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final ReadYourWrites readYourWrites;
+
+    private final Counter writes;
+    private final Counter stickyReads;
+    private final Counter replicaReads;
+    private final Counter nonTransactional;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites,
+            MeterRegistry meterRegistry) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+
+        this.writes = routeCounter("write", meterRegistry);
+        this.stickyReads = routeCounter("read_your_writes", meterRegistry);
+        this.replicaReads = routeCounter("replica", meterRegistry);
+        this.nonTransactional = routeCounter("non_transactional", meterRegistry);
+        Gauge.builder("datasource.read_your_writes.clients", readYourWrites, ReadYourWrites::size)
+                .register(meterRegistry);
+    }
+
+    private static Counter routeCounter(String route, MeterRegistry meterRegistry) {
+        return Counter.builder("datasource.routing").tag("route", route).register(meterRegistry);
+    }
+
+    // 每個交易只在第一次真的需要連線時呼叫一次
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (readYourWrites.isSticky()) {
+                stickyReads.increment();
+                return Route.PRIMARY;
+            }
+            replicaReads.increment();
+            return Route.REPLICA;
+        }
+        if (isWriteTransaction()) {
+            writes.increment();
+            return Route.PRIMARY;
+        }
+        nonTransactional.increment();
+        return Route.PRIMARY;
+    }
+
+    @Override
+    @NonNull
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        return isWriteTransaction() ? new WriteTracker().wrap(connection) : connection;
+    }
+
+    @Override
+    @NonNull
+    public Connection getConnection(@NonNull String username, @NonNull String password) throws SQLException {
+        Connection connection = super.getConnection(username, password);
+        return isWriteTransaction() ? new WriteTracker().wrap(connection) : connection;
+    }
+
+    private static boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * 寫入交易的連線：第一次執行 INSERT / UPDATE / DELETE 時記錄 client
+     * 只讀不寫的交易 (例如找不到資料的 updateUser) 不會讓 client 之後的讀取都走主資料庫
+     */
+    private class WriteTracker {
+
+        private boolean written;
+
+        Connection wrap(Connection connection) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                return result instanceof Statement statement ? wrap(statement) : result;
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, handler);
+        }
+
+        private Statement wrap(Statement statement) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            InvocationHandler handler = (proxy, method, args) -> {
+                Object result = invoke(statement, method, args);
+                if (isWrite(method.getName(), result)) {
+                    recordWrite();
+                }
+                return result;
+            };
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+                    handler);
+        }
+
+        // execute() 回傳 false 表示結果是更新筆數，不是查詢
+        private boolean isWrite(String method, Object result) {
+            return switch (method) {
+                case "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch" -> true;
+                case "execute" -> Boolean.FALSE.equals(result);
+                default -> false;
+            };
+        }
+
+        private void recordWrite() {
+            if (!written) {
+                written = true;
+                readYourWrites.recordWrite();
+            }
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package tw.com.eeit.ajax.common.datasource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 讀自己剛寫的資料 (read-your-writes)
+ * 唯讀副本會落後主資料庫一小段時間；某個 client 的寫入 commit 之後，
+ * 它在 window 內的唯讀交易仍然走主資料庫，才不會看到自己改之前的資料
+ *
+ * - client 與 RateLimitFilter 相同：有合法 Token 時以使用者 (JWT subject) 計算，否則以 IP 計算
+ * - 只看目前的 HTTP 請求；背景工作 (例如 OrderIngestWriter) 沒有 client，不受影響
+ * - 記錄在這個 JVM 的記憶體內，多台機器時需搭配 sticky session，否則換一台就不認得
+ * - window 為 0 時關閉
+ */
+public class ReadYourWrites {
+
+    private final long windowNanos;
+    // client -> 這個時間點 (nanoTime) 之前讀取都走主資料庫
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurge = new AtomicLong(System.nanoTime());
+
+    public ReadYourWrites(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    // 在寫入交易內呼叫，commit 成功後才開始計算 (rollback 時不記錄)
+    public void recordWrite() {
+        if (windowNanos <= 0) {
+            return;
+        }
+        String client = currentClient();
+        if (client == null) {
+            return;
+        }
+        afterCommit(() -> {
+            long now = System.nanoTime();
+            purgeExpiredIfDue(now);
+            stickyUntil.put(client, now + windowNanos);
+        });
+    }
+
+    // 目前的 client 是否剛寫入過
+    public boolean isSticky() {
+        if (stickyUntil.isEmpty()) {
+            return false;
+        }
+        String client = currentClient();
+        if (client == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(client);
+        return until != null && until - System.nanoTime() > 0;
+    }
+
+    public int size() {
+        return stickyUntil.size();
+    }
+
+    // 每個 window 最多清一次，Map 大小約等於兩個 window 內寫入過的 client 數
+    private void purgeExpiredIfDue(long now) {
+        long next = nextPurge.get();
+        if (now - next >= 0 && nextPurge.compareAndSet(next, now + windowNanos)) {
+            stickyUntil.values().removeIf(until -> until - now <= 0);
+        }
+    }
+
+    private static String currentClient() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "sub:" + authentication.getName();
+        }
+        return "ip:" + attributes.getRequest().getRemoteAddr();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package tw.com.eeit.ajax.common.datasource;
+
+import java.sql.SQLException;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.ConnectionHandle;
+import org.springframework.orm.jpa.JpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * 走唯讀副本的交易不寫入二級快取
+ *
+ * 副本落後主資料庫；快取被 evict 後，若由副本讀到的舊資料放回快取，
+ * 所有 client 都會一直讀到舊資料 (快取只有筆數上限，沒有過期時間)，ETag 也會錯誤地回 304
+ * 改為只有主資料庫讀到的資料才放進快取：
+ *
+ * - Entity / Collection: CacheStoreMode.BYPASS (Hibernate 的 CacheMode.GET)，命中時照常使用，未命中時不放回
+ *   以 JPA property 設定：EntityManager.find 依 property 決定，只改 Session.setCacheMode 的話 find 仍會寫入
+ * - 查詢快取: Hibernate 6.4 的查詢在 GET 模式未命中時仍會寫入結果，
+ *   所以可快取的查詢 (RestOrderRepository.findByUserId) 不在唯讀交易內執行，一律走主資料庫
+ *
+ * 判斷方式與 ReadWriteRoutingDataSource 相同：readOnly 且 client 沒有剛寫入過 → 副本
+ * 其餘行為都交給原本的 JpaDialect (HibernateJpaDialect)
+ */
+public class ReplicaCacheModeJpaDialect implements JpaDialect {
+
+    private static final String STORE_MODE = "jakarta.persistence.cache.storeMode";
+
+    private final JpaDialect delegate;
+    private final ReadYourWrites readYourWrites;
+
+    public ReplicaCacheModeJpaDialect(JpaDialect delegate, ReadYourWrites readYourWrites) {
+        this.delegate = delegate;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = delegate.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly() || readYourWrites.isSticky()) {
+            return transactionData;
+        }
+        Object previous = entityManager.getProperties().getOrDefault(STORE_MODE, CacheStoreMode.USE);
+        entityManager.setProperty(STORE_MODE, CacheStoreMode.BYPASS);
+        return new ReplicaTransactionData(transactionData, entityManager, previous);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaTransactionData replica) {
+            replica.entityManager().setProperty(STORE_MODE, replica.previousStoreMode());
+            delegate.cleanupTransaction(replica.delegate());
+            return;
+        }
+        delegate.cleanupTransaction(transactionData);
+    }
+
+    @Override
+    public Object prepareTransaction(EntityManager entityManager, boolean readOnly, String name)
+            throws PersistenceException {
+        return delegate.prepareTransaction(entityManager, readOnly, name);
+    }
+
+    @Override
+    public ConnectionHandle getJdbcConnection(EntityManager entityManager, boolean readOnly)
+            throws PersistenceException, SQLException {
+        return delegate.getJdbcConnection(entityManager, readOnly);
+    }
+
+    @Override
+    public void releaseJdbcConnection(ConnectionHandle conHandle, EntityManager entityManager)
+            throws PersistenceException, SQLException {
+        delegate.releaseJdbcConnection(conHandle, entityManager);
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+
+    private record ReplicaTransactionData(Object delegate, EntityManager entityManager, Object previousStoreMode) {
+    }
+}
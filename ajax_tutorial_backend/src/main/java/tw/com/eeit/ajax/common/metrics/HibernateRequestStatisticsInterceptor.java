@@ -0,0 +1,54 @@
+package tw.com.eeit.ajax.common.metrics;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 將每個請求的 Hibernate 使用量記錄成 DistributionSummary (依 uri 分組)
+ * - hibernate.request.statements
+ * - hibernate.request.entity.loads
+ * - hibernate.request.collection.fetches
+ */
+public class HibernateRequestStatisticsInterceptor implements HandlerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    public HibernateRequestStatisticsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler) {
+        RequestQueryCounter.start();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler, Exception ex) {
+        RequestQueryCounter.Counts counts = RequestQueryCounter.finish();
+        if (counts == null) {
+            return;
+        }
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        record("hibernate.request.statements", uri, counts.getStatements());
+        record("hibernate.request.entity.loads", uri, counts.getEntityLoads());
+        record("hibernate.request.collection.fetches", uri, counts.getCollectionFetches());
+    }
+
+    private void record(String name, String uri, int amount) {
+        DistributionSummary.builder(name)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(amount);
+    }
+}
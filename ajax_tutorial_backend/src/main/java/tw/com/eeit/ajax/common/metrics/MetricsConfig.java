@@ -0,0 +1,62 @@
+package tw.com.eeit.ajax.common.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * 每個請求的 Hibernate 統計 (ch1_1 購物車、ch3_1 REST 練習)
+ * 全域的 Hibernate / HikariCP / HTTP 延遲統計由 Actuator 自動提供
+ */
+@Configuration
+public class MetricsConfig {
+
+    // 每一句準備執行的 SQL 都會經過 StatementInspector
+    @Bean
+    public HibernatePropertiesCustomizer requestStatementCounter() {
+        StatementInspector inspector = sql -> {
+            RequestQueryCounter.statementPrepared();
+            return sql;
+        };
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+
+    // Entity 載入與 Collection lazy 讀取
+    @Bean
+    public SmartInitializingSingleton requestLoadListeners(EntityManagerFactory entityManagerFactory) {
+        return () -> {
+            EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry()
+                    .getService(EventListenerRegistry.class);
+            registry.appendListeners(EventType.POST_LOAD,
+                    (PostLoadEventListener) event -> RequestQueryCounter.entityLoaded());
+            registry.appendListeners(EventType.INIT_COLLECTION,
+                    (InitializeCollectionEventListener) event -> RequestQueryCounter.collectionFetched());
+        };
+    }
+
+    @Bean
+    public WebMvcConfigurer hibernateRequestStatistics(MeterRegistry meterRegistry) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(@NonNull InterceptorRegistry registry) {
+                registry.addInterceptor(new HibernateRequestStatisticsInterceptor(meterRegistry))
+                        .addPathPatterns("/ch1_1/**", "/api/ch3_1/**");
+            }
+        };
+    }
+}
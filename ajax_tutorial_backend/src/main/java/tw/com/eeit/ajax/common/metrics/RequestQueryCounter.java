@@ -0,0 +1,64 @@
+package tw.com.eeit.ajax.common.metrics;
+
+/**
+ * 記錄「目前這個請求」執行了多少 SQL、載入多少 Entity / Collection
+ * 由 HibernateRequestStatisticsInterceptor 在請求開始時 start()、結束時 finish()
+ * 不在統計範圍內的請求 (沒有 start) 不會有任何紀錄
+ */
+public final class RequestQueryCounter {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private RequestQueryCounter() {
+    }
+
+    public static void start() {
+        CURRENT.set(new Counts());
+    }
+
+    public static Counts finish() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts;
+    }
+
+    static void statementPrepared() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statements++;
+        }
+    }
+
+    static void entityLoaded() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.entityLoads++;
+        }
+    }
+
+    static void collectionFetched() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.collectionFetches++;
+        }
+    }
+
+    // 只會被同一個請求執行緒存取
+    public static class Counts {
+        private int statements;
+        private int entityLoads;
+        private int collectionFetches;
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public int getEntityLoads() {
+            return entityLoads;
+        }
+
+        public int getCollectionFetches() {
+            return collectionFetches;
+        }
+    }
+}
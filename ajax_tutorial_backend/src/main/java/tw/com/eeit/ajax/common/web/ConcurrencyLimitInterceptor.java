@@ -0,0 +1,63 @@
+package tw.com.eeit.ajax.common.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import tw.com.eeit.ajax.common.concurrent.GradientConcurrencyLimiter;
+
+/**
+ * 所有 Controller 共用一個 GradientConcurrencyLimiter
+ * 超過上限的請求在進 Controller 前直接回 503，不佔用 DB 連線也不排隊
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    // 有這個 attribute 表示 preHandle 拿到了名額，完成時要歸還
+    private static final String START_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".start";
+
+    private final GradientConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitInterceptor(GradientConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler) {
+        // 靜態檔等非 Controller 的請求不限制
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return false;
+        }
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+            @NonNull Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start != null) {
+            request.removeAttribute(START_ATTRIBUTE);
+            limiter.release(System.nanoTime() - (Long) start);
+        }
+    }
+
+    // 改為非同步處理時執行緒已經釋放，歸還名額但不列入延遲統計
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response, @NonNull Object handler) {
+        if (request.getAttribute(START_ATTRIBUTE) != null) {
+            request.removeAttribute(START_ATTRIBUTE);
+            limiter.release();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package tw.com.eeit.ajax.common.web;
+
+import java.util.StringJoiner;
+
+/**
+ * 以版本號產生 ETag，以及 If-Match 的比對
+ * (If-None-Match 交給 WebRequest.checkNotModified 處理)
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    // 強 ETag，例如 ETags.of("user", 1, 3) -> "user-1-3"
+    public static String of(Object... parts) {
+        StringJoiner joiner = new StringJoiner("-", "\"", "\"");
+        for (Object part : parts) {
+            joiner.add(String.valueOf(part));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * If-Match 是否成立
+     * - 沒有帶 If-Match: 不檢查
+     * - "*": 資源存在即可
+     * - 其他: 清單中任一個 ETag 與目前的完全相同 (strong comparison，W/ 開頭的一律不符)
+     * @param currentETag 目前的 ETag，資源不存在時為 null
+     */
+    public static boolean matches(String ifMatch, String currentETag) {
+        if (ifMatch == null) {
+            return true;
+        }
+        String value = ifMatch.trim();
+        if (value.equals("*")) {
+            return currentETag != null;
+        }
+        if (currentETag == null) {
+            return false;
+        }
+        for (String candidate : value.split(",")) {
+            if (candidate.trim().equals(currentETag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package tw.com.eeit.ajax.common.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * 逐筆把 JSON 寫到 response，不會把整份結果組成一個大陣列放在記憶體
+ * - NDJSON (application/x-ndjson): 一行一筆
+ * - SSE (text/event-stream): 一個 data 事件一筆，最後送出 end 事件 (避免 EventSource 自動重連又從頭下載)
+ *
+ * 每 FLUSH_EVERY 筆 flush 一次；Client 斷線時 write / flush 會丟出 IOException，呼叫端應立即停止讀取
+ */
+public class RecordStreamWriter {
+
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON, "", "\n"),
+        SSE(MediaType.TEXT_EVENT_STREAM, "data: ", "\n\n");
+
+        private final MediaType mediaType;
+        private final byte[] prefix;
+        private final byte[] suffix;
+
+        Format(MediaType mediaType, String prefix, String suffix) {
+            this.mediaType = mediaType;
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+            this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        // Accept 有 text/event-stream 時用 SSE，其餘 (含 */*) 用 NDJSON
+        public static Format fromAccept(String accept) {
+            return accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE) ? SSE : NDJSON;
+        }
+    }
+
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectWriter objectWriter;
+    private final Format format;
+    private final OutputStream out;
+    private long count;
+
+    public RecordStreamWriter(ObjectMapper objectMapper, Format format, OutputStream out) {
+        this.objectWriter = objectMapper.writer();
+        this.format = format;
+        this.out = out;
+    }
+
+    public void write(Object record) throws IOException {
+        out.write(format.prefix);
+        out.write(objectWriter.writeValueAsBytes(record)); // 單行 JSON (沒有開 INDENT_OUTPUT)
+        out.write(format.suffix);
+        if (++count % FLUSH_EVERY == 0) {
+            out.flush();
+        }
+    }
+
+    // 全部寫完時呼叫
+    public void finish() throws IOException {
+        if (format == Format.SSE) {
+            out.write(("event: end\ndata: {\"count\":" + count + "}\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+package tw.com.eeit.ajax.common.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 不會變 (或很少變) 的 JSON 回應，只序列化一次
+ * 第一次請求時把資料轉成 byte[] (與 gzip 版本)，之後直接寫出同一份 byte[]，
+ * 不必再建立物件、也不必再跑 Jackson；ETag 與 Content-Length 都是預先算好的
+ *
+ * 資料有變動時呼叫 invalidate(key) 讓版本 +1，下一次請求才會重新產生
+ */
+@Component
+public class SerializedResponseCache {
+
+    private record Entry(long version, byte[] identity, byte[] gzip, String etag, String gzipETag) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    public SerializedResponseCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 回傳快取的 JSON (依 Accept-Encoding 選擇 gzip 版本，If-None-Match 相符時回 304)
+     * @param loader 快取不存在或已失效時才會呼叫
+     */
+    public ResponseEntity<byte[]> respond(String key, Supplier<?> loader, WebRequest request) {
+        Entry entry = get(key, loader);
+        boolean gzip = entry.gzip() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? entry.gzipETag() : entry.etag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build(); // 304 Not Modified
+        }
+
+        byte[] body = gzip ? entry.gzip() : entry.identity();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.length)
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(body);
+    }
+
+    // 讓 key 的版本 +1，下一次請求時重新序列化
+    public void invalidate(String key) {
+        versions.merge(key, 1L, Long::sum);
+    }
+
+    private Entry get(String key, Supplier<?> loader) {
+        long version = versions.getOrDefault(key, 0L);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version() == version) {
+            return entry;
+        }
+        // 同一個 key 同時只會序列化一次
+        return entries.compute(key, (k, current) -> current != null && current.version() == version
+                ? current
+                : serialize(version, loader.get()));
+    }
+
+    private Entry serialize(long version, Object value) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(value);
+            byte[] gzip = gzip(identity);
+            String hash = DigestUtils.md5DigestAsHex(identity);
+            // 太小的資料壓縮後可能反而變大，就只保留原始版本
+            return new Entry(version, identity, gzip.length < identity.length ? gzip : null,
+                    ETags.of(hash), ETags.of(hash, "gzip"));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法序列化快取資料", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                // gzip;q=0 表示不接受
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
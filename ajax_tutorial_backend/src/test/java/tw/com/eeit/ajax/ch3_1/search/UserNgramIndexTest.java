@@ -0,0 +1,99 @@
+package tw.com.eeit.ajax.ch3_1.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tw.com.eeit.ajax.ch3_1.search.UserNgramIndex.Field;
+
+/**
+ * 候選 id 的交集，以及重建期間即時更新的交接 (beginRebuild / load / finishRebuild)
+ */
+class UserNgramIndexTest {
+
+    private final UserNgramIndex index = new UserNgramIndex(new SimpleMeterRegistry());
+
+    @Test
+    void searchReturnsIdsContainingEveryTrigram() {
+        rebuild();
+        index.put(1L, "Alice", "alice@x.com");
+        index.put(2L, "Alicia", "alicia@x.com");
+        index.put(3L, "Bob", "bob@x.com");
+
+        assertArrayEquals(new int[] { 1, 2 }, index.search(Field.NAME, "lic"));
+        assertArrayEquals(new int[] { 1, 2 }, index.search(Field.NAME, "ALIC"));
+        assertArrayEquals(new int[] { 1 }, index.search(Field.NAME, "lice"));
+        assertArrayEquals(new int[] { 3 }, index.search(Field.EMAIL, "bob@"));
+        assertArrayEquals(new int[0], index.search(Field.NAME, "@x."), "欄位分開索引");
+        assertArrayEquals(new int[0], index.search(Field.NAME, "zzz"));
+        assertNull(index.search(Field.NAME, "al"), "不足 3 個字改用 LIKE");
+    }
+
+    @Test
+    void searchGivesUpWhenTooManyCandidates() {
+        rebuild();
+        for (long id = 1; id <= UserNgramIndex.MAX_CANDIDATES + 1; id++) {
+            index.put(id, "user" + id, "user" + id + "@x.com");
+        }
+
+        assertNull(index.search(Field.NAME, "user"));
+        assertArrayEquals(new int[] { 1000 }, index.search(Field.NAME, "user1000"));
+    }
+
+    @Test
+    void removedIdsAreFilteredAndStaleTrigramsClearedOnRebuild() {
+        rebuild();
+        index.put(1L, "Alice", "alice@x.com");
+        index.put(2L, "Alicia", "alicia@x.com");
+
+        index.remove(1L);
+        index.put(2L, "Carol", "carol@x.com");
+
+        assertArrayEquals(new int[] { 2 }, index.search(Field.NAME, "carol"));
+        assertArrayEquals(new int[] { 2 }, index.search(Field.NAME, "alic"), "舊的 trigram 只會多出候選");
+        assertEquals(1, index.documentCount());
+
+        index.beginRebuild();
+        index.load(2L, "Carol", "carol@x.com");
+        index.finishRebuild();
+
+        assertArrayEquals(new int[0], index.search(Field.NAME, "alic"));
+        assertArrayEquals(new int[] { 2 }, index.search(Field.NAME, "carol"));
+    }
+
+    @Test
+    void rebuildSkipsIdsUpdatedWhileLoading() {
+        index.beginRebuild();
+        assertFalse(index.isReady());
+        assertNull(index.search(Field.NAME, "bob"));
+
+        // 載入前就被即時更新 / 刪除：載入讀到的是舊資料，必須略過
+        index.put(1L, "Newname", "new@x.com");
+        index.remove(2L);
+        index.load(1L, "Oldname", "old@x.com");
+        index.load(2L, "Bob", "bob@x.com");
+        index.load(3L, "Carl", "carl@x.com");
+        index.finishRebuild();
+
+        assertTrue(index.isReady());
+        assertArrayEquals(new int[] { 1 }, index.search(Field.NAME, "newname"));
+        assertArrayEquals(new int[0], index.search(Field.NAME, "oldname"));
+        assertArrayEquals(new int[0], index.search(Field.NAME, "bob"));
+        assertArrayEquals(new int[] { 3 }, index.search(Field.NAME, "carl"));
+        assertEquals(2, index.documentCount());
+
+        // 重建結束後的更新照常寫入
+        index.put(2L, "Bobby", "bobby@x.com");
+        assertArrayEquals(new int[] { 2 }, index.search(Field.NAME, "bob"));
+    }
+
+    private void rebuild() {
+        index.beginRebuild();
+        index.finishRebuild();
+    }
+}
@@ -0,0 +1,84 @@
+package tw.com.eeit.ajax.common.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 以人工的處理時間 (RTT) 驗證上限的調整方向
+ * window 設為 0：每次 release 湊滿樣本就更新一次，結果不受執行速度影響
+ */
+class GradientConcurrencyLimiterTest {
+
+    private static final long BASELINE_RTT = Duration.ofMillis(10).toNanos();
+    private static final long SLOW_RTT = Duration.ofMillis(100).toNanos();
+
+    private final GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(20, 10, 200, Duration.ZERO,
+            new SimpleMeterRegistry());
+
+    @Test
+    void limitGrowsWhileRttIsStable() {
+        int initial = limiter.getLimit();
+
+        runRounds(30, BASELINE_RTT);
+
+        assertTrue(limiter.getLimit() > initial, () -> "limit should grow, was " + limiter.getLimit());
+    }
+
+    @Test
+    void limitDropsWhenRttRisesAndRecoversAfterwards() {
+        runRounds(30, BASELINE_RTT);
+        int beforeSlowdown = limiter.getLimit();
+
+        runRounds(30, SLOW_RTT);
+        int duringSlowdown = limiter.getLimit();
+        assertTrue(duringSlowdown < beforeSlowdown,
+                () -> "limit should drop: " + beforeSlowdown + " -> " + duringSlowdown);
+
+        runRounds(30, BASELINE_RTT);
+        int afterRecovery = limiter.getLimit();
+        assertTrue(afterRecovery > duringSlowdown,
+                () -> "limit should recover: " + duringSlowdown + " -> " + afterRecovery);
+    }
+
+    @Test
+    void limitNeverDropsBelowMinimum() {
+        runRounds(100, SLOW_RTT);
+        runRounds(100, SLOW_RTT * 10);
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void rejectsBeyondLimitWithoutQueueing() {
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+
+        assertFalse(limiter.tryAcquire());
+        assertEquals(limit, limiter.getInFlight());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    // 每一輪把名額用滿再全部歸還，上限才會被調整 (沒用到一半以上時不調整)
+    private void runRounds(int rounds, long rttNanos) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rttNanos);
+            }
+        }
+    }
+}
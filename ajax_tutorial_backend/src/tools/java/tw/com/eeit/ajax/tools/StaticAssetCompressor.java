@@ -0,0 +1,87 @@
+package tw.com.eeit.ajax.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+/**
+ * 建置時預先壓縮靜態檔，在原檔旁產生 .gz 與 .br
+ * 執行期由 spring.web.resources.chain.compressed 依 Accept-Encoding 直接回傳，不必每次請求都壓縮
+ * 由 pom.xml 在 prepare-package 階段以單一檔案模式執行 (不需先編譯): java StaticAssetCompressor.java target/classes/static
+ */
+public class StaticAssetCompressor {
+
+    // 只壓縮文字類型，圖片、字型本身已經壓縮過
+    private static final Set<String> EXTENSIONS = Set.of("js", "mjs", "css", "html", "svg", "json", "txt", "map");
+    // 太小的檔案壓縮後反而可能變大，省下的流量也有限
+    private static final int MIN_SIZE = 256;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Path.of(args[0]);
+        if (!Files.isDirectory(root)) {
+            System.out.println("[assets] " + root + " 不存在，略過");
+            return;
+        }
+        Brotli4jLoader.ensureAvailability();
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).filter(StaticAssetCompressor::isCompressible).toList();
+        }
+        for (Path file : files) {
+            compress(root, file);
+        }
+    }
+
+    private static boolean isCompressible(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static void compress(Path root, Path file) throws IOException {
+        byte[] raw = Files.readAllBytes(file);
+        if (raw.length < MIN_SIZE) {
+            return;
+        }
+
+        byte[] gzip = gzip(raw);
+        byte[] brotli = Encoder.compress(raw, new Encoder.Parameters().setQuality(11));
+        write(file, ".gz", raw, gzip);
+        write(file, ".br", raw, brotli);
+        System.out.printf("[assets] %s: %d -> gzip %d, br %d bytes%n", root.relativize(file), raw.length, gzip.length,
+                brotli.length);
+    }
+
+    // 壓縮後沒有比較小就不產生，交給原檔
+    private static void write(Path file, String suffix, byte[] raw, byte[] compressed) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + suffix);
+        if (compressed.length < raw.length) {
+            Files.write(target, compressed);
+        } else {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(raw);
+        }
+        return out.toByteArray();
+    }
+}